@@ -8,6 +8,7 @@ import org.gradle.internal.os.OperatingSystem
 
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 // Sets the Java version to use for compiling your library.
@@ -110,10 +111,24 @@ dependencies {
 
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+
+    // Processing core is compileOnly for the library, so the tests and benchmarks need their own copy
+    testImplementation(group = "org.processing", name = "core", version = "4.3.1")
+    jmh(group = "org.processing", name = "core", version = "4.3.1")
 }
 
 tasks.test {
     useJUnitPlatform()
+    // Tests draw onto recording PGraphics stubs, so they must never need a display
+    systemProperty("java.awt.headless", "true")
+}
+
+// Benchmarks live in src/jmh/java and are run with the "jmh" task.
+// The GC profiler is enabled so allocation rates are reported alongside timings.
+jmh {
+    profilers.add("gc")
+    jvmArgs.add("-Djava.awt.headless=true")
+    resultFormat = "JSON"
 }
 
 //==============================
@@ -0,0 +1,114 @@
+package com.barneycodes.spicytext;
+
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.awt.PGraphicsJava2D;
+
+/**
+ * Shared set up for the SpicyText benchmarks.
+ * Provides a headless sketch (no window is ever opened) and deterministic sample texts of a given length.
+ */
+final class BenchmarkSketch {
+
+    /**
+     * Text size used by all of the benchmarks
+     */
+    static final int TEXT_SIZE = 32;
+
+    private static final String[] WORDS = {
+            "the", "quick", "brown", "fox", "jumps", "over", "a", "lazy", "dog", "while", "spicy", "text", "waves",
+            "bounces", "and", "jiggles", "across", "screen"
+    };
+
+    private static final String[] OPEN_TAGS = {
+            "[COLOUR=#FFFF0000]", "[BACKGROUND=#FF00FF00]", "[EFFECT=WAVE]", "[EFFECT=BOUNCE]", "[EFFECT=JIGGLE]"
+    };
+
+    private static final String[] CLOSE_TAGS = {
+            "[END_COLOUR]", "[END_BACKGROUND]", "[END_EFFECT]", "[END_EFFECT]", "[END_EFFECT]"
+    };
+
+    private BenchmarkSketch() {}
+
+    /**
+     * Creates a sketch that is never run, with an offscreen Java2D PGraphics as its main graphics.
+     * The sketch's default font is loaded so SpicyText can measure glyphs.
+     *
+     * @param width width of the offscreen graphics in pixels
+     * @param height height of the offscreen graphics in pixels
+     * @return the headless sketch
+     */
+    static PApplet createSketch(int width, int height) {
+        PApplet sketch = new PApplet();
+        sketch.g = createGraphics(sketch, width, height);
+        sketch.g.textAscent();
+        return sketch;
+    }
+
+    /**
+     * Creates an offscreen Java2D PGraphics without going through PApplet.createGraphics, which expects a running
+     * sketch.
+     *
+     * @param sketch the parent sketch
+     * @param width width in pixels
+     * @param height height in pixels
+     * @return the offscreen graphics
+     */
+    static PGraphics createGraphics(PApplet sketch, int width, int height) {
+        PGraphics g = new PGraphicsJava2D();
+        g.setParent(sketch);
+        g.setPrimary(false);
+        g.setSize(width, height);
+        return g;
+    }
+
+    /**
+     * Builds a plain String (no tags) of roughly the given number of characters.
+     *
+     * @param length the number of characters to generate
+     * @return the generated text
+     */
+    static String plainText(int length) {
+        StringBuilder builder = new StringBuilder(length + 16);
+        int word = 0;
+        while(builder.length() < length) {
+            builder.append(WORDS[word % WORDS.length]).append(' ');
+            word ++;
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    /**
+     * Builds a String of roughly the given number of displayed characters, where every few words are wrapped in one
+     * of the built-in colour/background/effect tags.
+     * The tags are not counted in the length, so plain and tagged texts of the same length display the same number
+     * of characters.
+     *
+     * @param length the number of displayed characters to generate
+     * @return the generated text, including tags
+     */
+    static String taggedText(int length) {
+        StringBuilder builder = new StringBuilder(length * 2);
+        int displayed = 0;
+        int word = 0;
+        while(displayed < length) {
+            String w = WORDS[word % WORDS.length];
+            if(displayed + w.length() + 1 > length) {
+                w = w.substring(0, PApplet.max(0, length - displayed - 1));
+            }
+
+            if(word % 3 == 0) {
+                int tag = (word / 3) % OPEN_TAGS.length;
+                builder.append(OPEN_TAGS[tag]).append(w).append(CLOSE_TAGS[tag]);
+            } else {
+                builder.append(w);
+            }
+            builder.append(' ');
+
+            displayed += w.length() + 1;
+            word ++;
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.barneycodes.spicytext;
+
+import org.openjdk.jmh.annotations.*;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SpicyText.draw into an offscreen Java2D PGraphics for plain and tag-heavy texts.
+ * The graphics is opened once per trial, so only the cost of the draw call itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark {
+
+    private static final int SIZE = 1024;
+
+    @Param({"100", "1000"})
+    public int length;
+
+    @Param({"false", "true"})
+    public boolean tagged;
+
+    private PGraphics g;
+    private SpicyText spicyText;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        PApplet sketch = BenchmarkSketch.createSketch(SIZE, SIZE);
+        g = BenchmarkSketch.createGraphics(sketch, SIZE, SIZE);
+        g.beginDraw();
+
+        String text = tagged ? BenchmarkSketch.taggedText(length) : BenchmarkSketch.plainText(length);
+        spicyText = new SpicyText(sketch, text, BenchmarkSketch.TEXT_SIZE, SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.endDraw();
+    }
+
+    @Benchmark
+    public PGraphics draw() {
+        spicyText.draw(g, SIZE / 2f, SIZE / 2f, PConstants.CENTER, PConstants.CENTER);
+        return g;
+    }
+}
@@ -0,0 +1,51 @@
+package com.barneycodes.spicytext;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SpicyTextChar.applyEffects for each of the built-in effects, as well as all of them stacked together.
+ * Each invocation evaluates one frame's worth of effects for a line of characters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EffectBenchmark {
+
+    private static final int CHAR_COUNT = 100;
+
+    @Param({"NONE", "WAVE", "BOUNCE", "JIGGLE", "WAVE,BOUNCE,JIGGLE"})
+    public String effects;
+
+    private SpicyTextChar[] chars;
+    private int time;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ArrayList<String> effectList = new ArrayList<>();
+        if(!effects.equals("NONE")) {
+            effectList.addAll(List.of(effects.split(",")));
+        }
+
+        chars = new SpicyTextChar[CHAR_COUNT];
+        for(int i = 0; i < CHAR_COUNT; i ++) {
+            chars[i] = new SpicyTextChar('a', 0, true, -1, i, i * 16, 0, 16, BenchmarkSketch.TEXT_SIZE, effectList);
+        }
+    }
+
+    @Benchmark
+    public void applyEffects(Blackhole blackhole) {
+        // Advance time by roughly one frame so the animated effects don't settle on a single value
+        time += 16;
+        for(SpicyTextChar c : chars) {
+            blackhole.consume(c.applyEffects(time));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.barneycodes.spicytext;
+
+import org.openjdk.jmh.annotations.*;
+import processing.core.PApplet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tag parsing and glyph measurement (SpicyText.processText) for plain and tag-heavy texts of different
+ * sizes, without any text wrapping.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int length;
+
+    @Param({"false", "true"})
+    public boolean tagged;
+
+    private String text;
+    private SpicyText spicyText;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        PApplet sketch = BenchmarkSketch.createSketch(64, 64);
+        text = tagged ? BenchmarkSketch.taggedText(length) : BenchmarkSketch.plainText(length);
+        spicyText = new SpicyText(sketch, text, BenchmarkSketch.TEXT_SIZE);
+    }
+
+    @Benchmark
+    public SpicyText parse() {
+        // setText with a max width always re-processes, even when the text has not changed
+        spicyText.setText(text, -1);
+        return spicyText;
+    }
+}
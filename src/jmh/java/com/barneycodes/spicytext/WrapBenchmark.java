@@ -0,0 +1,41 @@
+package com.barneycodes.spicytext;
+
+import org.openjdk.jmh.annotations.*;
+import processing.core.PApplet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures processing a fixed tag-heavy text while wrapping it at several widths.
+ * A max width of -1 is included as the no-wrapping baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrapBenchmark {
+
+    @Param({"1000", "10000"})
+    public int length;
+
+    @Param({"-1", "200", "800", "2000"})
+    public int maxWidth;
+
+    private String text;
+    private SpicyText spicyText;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        PApplet sketch = BenchmarkSketch.createSketch(64, 64);
+        text = BenchmarkSketch.taggedText(length);
+        spicyText = new SpicyText(sketch, text, BenchmarkSketch.TEXT_SIZE, maxWidth);
+    }
+
+    @Benchmark
+    public SpicyText wrap() {
+        spicyText.setText(text, maxWidth);
+        return spicyText;
+    }
+}
@@ -28,14 +28,30 @@ public class CharEffectParams {
      */
     public float x, y, rotation;
 
+    /**
+     * Number of registered effects that were applied (unknown effect names are skipped)
+     */
+    int effectsApplied;
+
     /**
      * Initialises the default values from the given SpicyTextChar.
      * @param c the SpicyTextChar that the effects will be applied to
      * @param time the animation time for the current effect (in milliseconds)
      */
     protected CharEffectParams(SpicyTextChar  c, int time) {
-        this.colour = c.colour;
-        this.background = c.background;
+        this(c, time, c.colour, c.background);
+    }
+
+    /**
+     * Initialises the default values from the given SpicyTextChar, but with the given colours.
+     * @param c the SpicyTextChar that the effects will be applied to
+     * @param time the animation time for the current effect (in milliseconds)
+     * @param colour the starting text colour
+     * @param background the starting background colour (ignored if -1)
+     */
+    CharEffectParams(SpicyTextChar c, int time, int colour, int background) {
+        this.colour = colour;
+        this.background = background;
         this.x = c.x;
         this.y = c.y;
 
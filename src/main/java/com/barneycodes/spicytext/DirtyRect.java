@@ -0,0 +1,32 @@
+package com.barneycodes.spicytext;
+
+/**
+ * An area that has changed since the previous time a SpicyText was drawn.
+ * The position is in the same coordinates as the x/y given to draw.
+ *
+ * @see SpicyText#dirtyRects()
+ */
+public class DirtyRect {
+
+    /**
+     * Position of the top left corner of the area
+     */
+    public final float x, y;
+
+    /**
+     * Size of the area
+     */
+    public final float width, height;
+
+    DirtyRect(float x, float y, float width, float height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DirtyRect[x=%.1f, y=%.1f, width=%.1f, height=%.1f]", x, y, width, height);
+    }
+}
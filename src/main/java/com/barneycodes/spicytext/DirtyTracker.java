@@ -0,0 +1,211 @@
+package com.barneycodes.spicytext;
+
+import processing.core.PApplet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Works out which areas of a SpicyText changed between two draws.
+ * Every character's drawn state (position after alignment and effects, rotation and colours) is compared with the
+ * previous draw. Changed characters are merged into one rectangle per run of changed characters on each line, covering
+ * both where they were drawn before and where they are drawn now (including backgrounds and drop shadows).
+ */
+class DirtyTracker {
+
+    /**
+     * Extra space around each character, for anti-aliasing and glyphs that overhang their advance width
+     */
+    private static final float PADDING = 1;
+
+    private final ArrayList<DirtyRect> rects = new ArrayList<>();
+
+    /**
+     * The characters drawn last time, so a new layout can be spotted
+     */
+    private List<SpicyTextChar> chars;
+
+    // Theme paint properties that change every character's bounds or look
+    private int dropShadowOffset;
+    private float shadowOpacity;
+    private int textBackgroundMargin;
+    private int cornerRadius;
+
+    private boolean allDirty;
+
+    // Drawn state of each character, for the current and previous draws
+    private float[] x, y, rotation, bounds;
+    private int[] colour, background, line;
+    private float[] prevX, prevY, prevRotation, prevBounds;
+    private int[] prevColour, prevBackground, prevLine;
+
+    private int count, prevCount;
+
+    /**
+     * Starts recording a draw.
+     */
+    void begin(List<SpicyTextChar> chars, SpicyTextTheme theme) {
+        allDirty = chars != this.chars
+                || theme.dropShadowOffset != dropShadowOffset
+                || theme.shadowOpacity != shadowOpacity
+                || theme.textBackgroundMargin != textBackgroundMargin
+                || theme.cornerRadius != cornerRadius;
+
+        this.chars = chars;
+        dropShadowOffset = theme.dropShadowOffset;
+        shadowOpacity = theme.shadowOpacity;
+        textBackgroundMargin = theme.textBackgroundMargin;
+        cornerRadius = theme.cornerRadius;
+
+        swap();
+        count = chars.size();
+        if(x == null || x.length < count) {
+            x = new float[count];
+            y = new float[count];
+            rotation = new float[count];
+            bounds = new float[count * 4];
+            colour = new int[count];
+            background = new int[count];
+            line = new int[count];
+        }
+    }
+
+    private void swap() {
+        float[] f;
+        int[] n;
+        f = x; x = prevX; prevX = f;
+        f = y; y = prevY; prevY = f;
+        f = rotation; rotation = prevRotation; prevRotation = f;
+        f = bounds; bounds = prevBounds; prevBounds = f;
+        n = colour; colour = prevColour; prevColour = n;
+        n = background; background = prevBackground; prevBackground = n;
+        n = line; line = prevLine; prevLine = n;
+        prevCount = count;
+    }
+
+    /**
+     * Records how a character was drawn.
+     *
+     * @param i index of the character
+     * @param lineNum the line the character is on
+     * @param c the character
+     * @param params the character's display properties after effects
+     * @param left the drawn x position of the character (in draw coordinates, before rotation)
+     * @param top the drawn y position of the character (in draw coordinates, before rotation)
+     */
+    void record(int i, int lineNum, SpicyTextChar c, CharEffectParams params, float left, float top) {
+        x[i] = left;
+        y[i] = top;
+        rotation[i] = params.rotation;
+        colour[i] = params.colour;
+        background[i] = params.background;
+        line[i] = lineNum;
+
+        // Box around the character's centre, before rotation
+        float margin = params.background != -1 ? textBackgroundMargin : 0;
+        float shadow = dropShadowOffset;
+        float minX = -c.width/2f - margin + PApplet.min(0, shadow) - PADDING;
+        float maxX = c.width/2f + margin + PApplet.max(0, shadow) + PADDING;
+        float minY = -c.height/2f - margin + PApplet.min(0, shadow) - PADDING;
+        float maxY = c.height/2f + margin + PApplet.max(0, shadow) + PADDING;
+
+        float centreX = left + c.width/2f;
+        float centreY = top + c.height/2f;
+
+        if(params.rotation != 0) {
+            // Bounding box of the rotated box
+            float cos = PApplet.abs(PApplet.cos(params.rotation));
+            float sin = PApplet.abs(PApplet.sin(params.rotation));
+            float halfW = Math.max(-minX, maxX);
+            float halfH = Math.max(-minY, maxY);
+            float rotatedW = halfW * cos + halfH * sin;
+            float rotatedH = halfW * sin + halfH * cos;
+            minX = -rotatedW;
+            maxX = rotatedW;
+            minY = -rotatedH;
+            maxY = rotatedH;
+        }
+
+        bounds[i * 4] = centreX + minX;
+        bounds[i * 4 + 1] = centreY + minY;
+        bounds[i * 4 + 2] = centreX + maxX;
+        bounds[i * 4 + 3] = centreY + maxY;
+    }
+
+    /**
+     * Finishes recording a draw and works out the changed areas.
+     */
+    void end() {
+        rects.clear();
+
+        if(allDirty) {
+            addUnion(prevBounds, 0, prevCount);
+            addUnion(bounds, 0, count);
+            return;
+        }
+
+        int runStart = -1;
+        float minX = 0, minY = 0, maxX = 0, maxY = 0;
+
+        for(int i = 0; i < count; i ++) {
+            boolean changed = x[i] != prevX[i] || y[i] != prevY[i] || rotation[i] != prevRotation[i]
+                    || colour[i] != prevColour[i] || background[i] != prevBackground[i];
+
+            if(runStart != -1 && (!changed || line[i] != line[runStart])) {
+                rects.add(new DirtyRect(minX, minY, maxX - minX, maxY - minY));
+                runStart = -1;
+            }
+            if(!changed) {
+                continue;
+            }
+
+            float left = Math.min(bounds[i * 4], prevBounds[i * 4]);
+            float top = Math.min(bounds[i * 4 + 1], prevBounds[i * 4 + 1]);
+            float right = Math.max(bounds[i * 4 + 2], prevBounds[i * 4 + 2]);
+            float bottom = Math.max(bounds[i * 4 + 3], prevBounds[i * 4 + 3]);
+
+            if(runStart == -1) {
+                runStart = i;
+                minX = left;
+                minY = top;
+                maxX = right;
+                maxY = bottom;
+            } else {
+                minX = Math.min(minX, left);
+                minY = Math.min(minY, top);
+                maxX = Math.max(maxX, right);
+                maxY = Math.max(maxY, bottom);
+            }
+        }
+
+        if(runStart != -1) {
+            rects.add(new DirtyRect(minX, minY, maxX - minX, maxY - minY));
+        }
+    }
+
+    /**
+     * Adds a single rectangle covering all the given character bounds, if there are any.
+     */
+    private void addUnion(float[] b, int from, int to) {
+        if(b == null || to <= from) {
+            return;
+        }
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for(int i = from; i < to; i ++) {
+            minX = Math.min(minX, b[i * 4]);
+            minY = Math.min(minY, b[i * 4 + 1]);
+            maxX = Math.max(maxX, b[i * 4 + 2]);
+            maxY = Math.max(maxY, b[i * 4 + 3]);
+        }
+        rects.add(new DirtyRect(minX, minY, maxX - minX, maxY - minY));
+    }
+
+    /**
+     * @return the changed areas from the last draw, which are cleared and reused by the next draw
+     */
+    List<DirtyRect> rects() {
+        return rects;
+    }
+}
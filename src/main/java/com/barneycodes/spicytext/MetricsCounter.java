@@ -0,0 +1,36 @@
+package com.barneycodes.spicytext;
+
+/**
+ * Mutable counters behind a SpicyTextMetrics snapshot.
+ * SpicyText keeps one of these per object, plus a shared one for the global aggregate.
+ */
+class MetricsCounter {
+    private long layouts, layoutNanos, cacheHits;
+    private long draws, drawNanos, glyphsDrawn, backgroundsDrawn, effectEvaluations;
+
+    void recordLayout(long nanos) {
+        layouts ++;
+        layoutNanos += nanos;
+    }
+
+    void recordCacheHit() {
+        cacheHits ++;
+    }
+
+    void recordDraw(long nanos, int glyphs, int backgrounds, int effects) {
+        draws ++;
+        drawNanos += nanos;
+        glyphsDrawn += glyphs;
+        backgroundsDrawn += backgrounds;
+        effectEvaluations += effects;
+    }
+
+    SpicyTextMetrics snapshot() {
+        return new SpicyTextMetrics(layouts, layoutNanos, cacheHits, draws, drawNanos, glyphsDrawn, backgroundsDrawn, effectEvaluations);
+    }
+
+    void reset() {
+        layouts = layoutNanos = cacheHits = 0;
+        draws = drawNanos = glyphsDrawn = backgroundsDrawn = effectEvaluations = 0;
+    }
+}
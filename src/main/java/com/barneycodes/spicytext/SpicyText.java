@@ -2,8 +2,14 @@ package com.barneycodes.spicytext;
 
 import processing.core.PApplet;
 import processing.core.PConstants;
+import processing.core.PFont;
 import processing.core.PGraphics;
+import processing.core.PVector;
 
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.BiConsumer;
 
@@ -43,21 +49,84 @@ public class SpicyText implements PConstants {
         effects.put(name, effect);
     }
 
+    private static boolean metricsEnabled = false;
+
+    private static final MetricsCounter globalMetrics = new MetricsCounter();
+
+    /**
+     * Turns collection of rendering metrics on or off for all SpicyText objects.
+     * Metrics are off by default; while off, the only cost is a single check per setText and per draw.
+     *
+     * @param enabled true to start collecting metrics, false to stop
+     * @see SpicyText#metrics()
+     * @see SpicyText#globalMetrics()
+     */
+    public static void setMetricsEnabled(boolean enabled) {
+        metricsEnabled = enabled;
+    }
+
+    /**
+     * Checks whether rendering metrics are currently being collected.
+     *
+     * @return true if metrics are enabled
+     */
+    public static boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Gets a snapshot of the metrics collected across ALL SpicyText objects since metrics were enabled (or last reset).
+     *
+     * @return the global metrics snapshot
+     * @see SpicyText#setMetricsEnabled(boolean)
+     */
+    public static SpicyTextMetrics globalMetrics() {
+        return globalMetrics.snapshot();
+    }
+
+    /**
+     * Resets the global metrics back to 0. Metrics of individual SpicyText objects are not affected.
+     */
+    public static void resetGlobalMetrics() {
+        globalMetrics.reset();
+    }
+
     private final PApplet parent;
 
+    private final MetricsCounter metrics = new MetricsCounter();
+
+    /**
+     * Compares each draw with the previous one, or null if dirty tracking is off
+     */
+    private DirtyTracker dirtyTracker;
+
     private ArrayList<SpicyTextChar> chars;
     private ArrayList<Float> lineLengths;
 
+    /**
+     * Index of the first char on each line, with an extra entry at the end holding the total number of chars.
+     * Empty lines start at the same index as the line after them.
+     */
+    private int[] lineStarts;
+
     private String rawText;
     private final int textSize;
-    private final int textHeight;
+    private int textHeight;
+    private int lineSpacing;
     private int maxWidth;
     private int width;
     private int height;
 
     private final SpicyTextTheme theme;
 
-    private final int ascent;
+    private int ascent;
+
+    /**
+     * The theme's layout properties as they were when the text was last processed, used to spot theme changes that
+     * need the text to be processed again
+     */
+    private PFont layoutFont;
+    private int layoutNewLineMargin;
 
     /**
      * Creates a SpicyText object with the given text at the given text size.
@@ -107,18 +176,21 @@ public class SpicyText implements PConstants {
      * @see SpicyTextTheme
      */
     public SpicyText(PApplet parent, String text, int textSize, int maxWidth, SpicyTextTheme theme) {
-        this.parent = parent;
+        this(parent, textSize, maxWidth, theme);
 
-        ascent = (int)(textSize * theme.getFont(parent).ascent());
-        int descent = (int) (textSize * theme.getFont(parent).descent());
+        setText(text);
+    }
+
+    /**
+     * Creates a SpicyText object without any text, for when the layout is filled in another way (e.g. loaded).
+     */
+    private SpicyText(PApplet parent, int textSize, int maxWidth, SpicyTextTheme theme) {
+        this.parent = parent;
 
         this.textSize = textSize;
-        this.textHeight = ascent + descent;
 
         this.maxWidth = maxWidth;
         this.theme = theme;
-
-        setText(text);
     }
 
     /**
@@ -132,9 +204,9 @@ public class SpicyText implements PConstants {
     public void setText(String text, int maxWidth) {
         this.maxWidth = maxWidth;
         this.width = 0;
-        // Reset the raw text so that setText doesn't skip it!
-        rawText = "";
-        setText(text);
+        // Always process, even if the text hasn't changed, since the wrapping width may have changed too
+        rawText = text;
+        layout();
     }
 
     /**
@@ -146,10 +218,61 @@ public class SpicyText implements PConstants {
      */
     public void setText(String text) {
         if(Objects.equals(rawText, text)) {
+            if(metricsEnabled) {
+                metrics.recordCacheHit();
+                globalMetrics.recordCacheHit();
+            }
             return;
         }
         rawText = text;
-        processText();
+        layout();
+    }
+
+    private void layout() {
+        if(metricsEnabled) {
+            long start = System.nanoTime();
+            processText();
+            long elapsed = System.nanoTime() - start;
+            metrics.recordLayout(elapsed);
+            globalMetrics.recordLayout(elapsed);
+        } else {
+            processText();
+        }
+    }
+
+    /**
+     * Processes the text again if any of the theme's layout properties have changed since it was last processed.
+     * This is checked automatically at the start of every draw, so it only needs calling directly if width/height
+     * are needed before the next draw.
+     *
+     * @return true if the text was processed again
+     * @see SpicyTextTheme
+     */
+    public boolean refreshLayout() {
+        if(theme.font == layoutFont && theme.newLineMargin == layoutNewLineMargin) {
+            return false;
+        }
+        width = 0;
+        layout();
+        return true;
+    }
+
+    /**
+     * Gets a snapshot of the metrics collected for this SpicyText object since metrics were enabled (or last reset).
+     * Nothing is collected unless metrics have been enabled.
+     *
+     * @return this object's metrics snapshot
+     * @see SpicyText#setMetricsEnabled(boolean)
+     */
+    public SpicyTextMetrics metrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Resets this object's metrics back to 0. The global metrics are not affected.
+     */
+    public void resetMetrics() {
+        metrics.reset();
     }
 
     /**
@@ -176,6 +299,205 @@ public class SpicyText implements PConstants {
         return height;
     }
 
+    /**
+     * Turns dirty tracking on or off. While on, each draw works out which areas changed since the previous draw, which
+     * can be read with dirtyRects(). This is useful when drawing onto a buffer that is not cleared every frame.
+     * Dirty tracking is off by default, since it has to remember how every character was drawn.
+     *
+     * @param enabled true to start tracking changes, false to stop
+     * @see SpicyText#dirtyRects()
+     */
+    public void setDirtyTracking(boolean enabled) {
+        if(!enabled) {
+            dirtyTracker = null;
+        } else if(dirtyTracker == null) {
+            dirtyTracker = new DirtyTracker();
+        }
+    }
+
+    /**
+     * Gets the areas that changed in the most recent draw, compared to the draw before it.
+     * Each area covers where changed characters were drawn before and where they are drawn now, including their
+     * effects, backgrounds and drop shadows. Areas are in the same coordinates as the x/y given to draw.
+     * A text that has not changed (no animated effects, theme changes, new text or new draw position) reports no areas,
+     * so it does not need to be redrawn. The first draw after turning on dirty tracking reports everything it draws.
+     *
+     * @return a copy of the changed areas (empty if nothing changed, or dirty tracking is off)
+     * @see SpicyText#setDirtyTracking(boolean)
+     */
+    public List<DirtyRect> dirtyRects() {
+        if(dirtyTracker == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(dirtyTracker.rects());
+    }
+
+    /**
+     * Gets the number of displayed characters (tags and new lines are not counted).
+     *
+     * @return the number of displayed characters
+     */
+    public int charCount() {
+        return chars.size();
+    }
+
+    /**
+     * Gets a displayed character by its index.
+     *
+     * @param index the index of the character in the displayed text
+     * @return the character at the given index
+     * @see SpicyText#charAt(float, float, int, int)
+     */
+    public SpicyTextChar getChar(int index) {
+        return chars.get(index);
+    }
+
+    /**
+     * Finds the character at the given position, ignoring any effects.
+     * The position is relative to where the text is drawn (i.e. the x/y given to draw), and the alignment should match
+     * the alignment the text is drawn with.
+     * The gap between lines (the theme's newLineMargin) does not belong to any character.
+     *
+     * @param x horizontal position in pixels, relative to the drawn position
+     * @param y vertical position in pixels, relative to the drawn position
+     * @param alignH horizontal alignment (LEFT/CENTER/RIGHT)
+     * @param alignV vertical alignment (TOP/CENTER/BOTTOM)
+     * @return the index of the character at the position, or -1 if there is no character there
+     * @see SpicyText#charAt(float, float, int, int, boolean)
+     */
+    public int charAt(float x, float y, int alignH, int alignV) {
+        return charAt(x, y, alignH, alignV, false);
+    }
+
+    /**
+     * Finds the character at the given position, optionally taking effects into account.
+     * The position is relative to where the text is drawn (i.e. the x/y given to draw), and the alignment should match
+     * the alignment the text is drawn with.
+     * The lookup is a binary search of the line's characters, so it stays fast for large texts. With effects, only the
+     * characters near the position are checked, so effects that move characters further than about one line or a
+     * couple of characters away from their original position will not be found there.
+     *
+     * @param x horizontal position in pixels, relative to the drawn position
+     * @param y vertical position in pixels, relative to the drawn position
+     * @param alignH horizontal alignment (LEFT/CENTER/RIGHT)
+     * @param alignV vertical alignment (TOP/CENTER/BOTTOM)
+     * @param withEffects true to test against where characters are currently displayed (after effects are applied),
+     *                    false to test against their original positions
+     * @return the index of the character at the position, or -1 if there is no character there
+     */
+    public int charAt(float x, float y, int alignH, int alignV, boolean withEffects) {
+        y -= yAlignOffset(alignV, height);
+        int line = (int)Math.floor(y / lineSpacing);
+
+        if(!withEffects) {
+            if(line < 0 || line >= lineLengths.size() || y - line * lineSpacing >= textHeight) {
+                return -1;
+            }
+
+            float lineX = x - lineOffset(alignH, line);
+            int i = lastCharBefore(line, lineX);
+            if(i == -1) {
+                return -1;
+            }
+            SpicyTextChar c = chars.get(i);
+            return lineX < c.x + c.width ? i : -1;
+        }
+
+        // Characters drawn later are on top, so the highest matching index wins
+        int time = parent.millis();
+        int found = -1;
+        for(int l = PApplet.max(0, line - 1); l <= PApplet.min(lineLengths.size() - 1, line + 1); l ++) {
+            float offset = lineOffset(alignH, l);
+            int nearest = lastCharBefore(l, x - offset);
+            int from = PApplet.max(lineStarts[l], nearest - 2);
+            int to = PApplet.min(lineStarts[l + 1], nearest + 3);
+
+            for(int i = from; i < to; i ++) {
+                if(i > found && containsDisplayed(chars.get(i), time, x - offset, y)) {
+                    found = i;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the position of the top left of a character, as it would be drawn with LEFT/TOP alignment (ignoring effects).
+     * An index equal to charCount() gives the position just after the last character, which is useful for carets.
+     *
+     * @param index the index of the character in the displayed text
+     * @return the position of the character in pixels, relative to the drawn position
+     * @see SpicyText#positionOf(int, int, int)
+     */
+    public PVector positionOf(int index) {
+        return positionOf(index, LEFT, TOP);
+    }
+
+    /**
+     * Gets the position of the top left of a character, as it would be drawn with the given alignment (ignoring effects).
+     * An index equal to charCount() gives the position just after the last character, which is useful for carets.
+     *
+     * @param index the index of the character in the displayed text
+     * @param alignH horizontal alignment (LEFT/CENTER/RIGHT)
+     * @param alignV vertical alignment (TOP/CENTER/BOTTOM)
+     * @return the position of the character in pixels, relative to the drawn position
+     */
+    public PVector positionOf(int index, int alignH, int alignV) {
+        Objects.checkIndex(index, chars.size() + 1);
+
+        int line;
+        float x;
+        if(index < chars.size()) {
+            SpicyTextChar c = chars.get(index);
+            line = lineIndex(c.y);
+            x = c.x;
+        } else {
+            line = lineLengths.size() - 1;
+            x = lineLengths.get(line);
+        }
+
+        return new PVector(x + lineOffset(alignH, line), line * lineSpacing + yAlignOffset(alignV, height));
+    }
+
+    /**
+     * Binary searches the given line for the last character that starts at or before the given x position.
+     * @return the index of the character, or -1 if there isn't one
+     */
+    private int lastCharBefore(int line, float x) {
+        int low = lineStarts[line];
+        int high = lineStarts[line + 1] - 1;
+        int found = -1;
+
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(chars.get(mid).x <= x) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether a position (relative to the start of the character's line) is inside the character, after its
+     * effects have been applied. This mirrors the transforms used in draw.
+     */
+    private boolean containsDisplayed(SpicyTextChar c, int time, float x, float y) {
+        CharEffectParams params = c.applyEffects(time);
+
+        float dx = x - (params.x + c.width/2f);
+        float dy = y - (params.y + c.height/2f);
+
+        float cos = PApplet.cos(-params.rotation);
+        float sin = PApplet.sin(-params.rotation);
+        float localX = dx * cos - dy * sin;
+        float localY = dx * sin + dy * cos;
+
+        return PApplet.abs(localX) <= c.width/2f && PApplet.abs(localY) <= c.height/2f;
+    }
+
     /**
      * Displays the Spicy Text at the given position.
      * The text will be aligned so the given position is at the TOP LEFT of the text.
@@ -227,10 +549,25 @@ public class SpicyText implements PConstants {
      * @see PGraphics#textAlign(int, int)
      */
     public void draw(PGraphics g, float x, float y, int alignH, int alignV) {
+        refreshLayout();
+
+        long start = metricsEnabled ? System.nanoTime() : 0;
+        int backgrounds = 0;
+        int effectEvaluations = 0;
+        int time = parent.millis();
+
+        // Paint-only theme properties are resolved here rather than when processing, so changing them needs no layout
+        int themeColour = parent.color(theme.textColour);
+
+        float originY = y + yAlignOffset(alignV, height);
+        if(dirtyTracker != null) {
+            dirtyTracker.begin(chars, theme);
+        }
+
         g.push();
 
         g.textAlign(LEFT, BASELINE);
-        g.translate(x, y + yAlignOffset(alignV, height));
+        g.translate(x, originY);
 
         if(theme.font != null) {
             g.textFont(theme.font, textSize);
@@ -241,20 +578,27 @@ public class SpicyText implements PConstants {
 
         // Draw backgrounds first
         int lineNum = 0;
-        float lastY = 0;
-        float lineOffset = xAlignOffset(alignH, (int)(lineLengths.get(lineNum).floatValue()));
+        float lineOffset = lineOffset(alignH, lineNum);
 
         for(int i = 0; i < chars.size(); i ++) {
             SpicyTextChar c = chars.get(i);
-            params[i] = c.applyEffects(parent.millis());
+            int colour = theme.resolveColour(c.themeColour ? themeColour : c.colour);
+            int background = c.background == -1 ? -1 : theme.resolveColour(c.background);
+            params[i] = c.applyEffects(time, colour, background);
+            effectEvaluations += params[i].effectsApplied;
 
-            if(c.y != lastY) {
+            // Skips over any empty lines too
+            while(i >= lineStarts[lineNum + 1]) {
                 lineNum += 1;
-                lineOffset = xAlignOffset(alignH, (int)(lineLengths.get(lineNum).floatValue()));
-                lastY = c.y;
+                lineOffset = lineOffset(alignH, lineNum);
+            }
+
+            if(dirtyTracker != null) {
+                dirtyTracker.record(i, lineNum, c, params[i], x + lineOffset + params[i].x, originY + params[i].y);
             }
 
             if(params[i].background != -1) {
+                backgrounds ++;
                 g.push();
 
                 g.translate(lineOffset + params[i].x + c.width/2, params[i].y + c.height/2);
@@ -271,15 +615,14 @@ public class SpicyText implements PConstants {
         }
 
         lineNum = 0;
-        lastY = 0;
-        lineOffset = xAlignOffset(alignH, (int)(lineLengths.get(lineNum).floatValue()));
+        lineOffset = lineOffset(alignH, lineNum);
         for(int i = 0; i < chars.size(); i ++) {
             SpicyTextChar c = chars.get(i);
 
-            if(c.y != lastY) {
+            // Skips over any empty lines too
+            while(i >= lineStarts[lineNum + 1]) {
                 lineNum += 1;
-                lineOffset = xAlignOffset(alignH, (int)(lineLengths.get(lineNum).floatValue()));
-                lastY = c.y;
+                lineOffset = lineOffset(alignH, lineNum);
             }
 
             g.push();
@@ -299,6 +642,333 @@ public class SpicyText implements PConstants {
         }
 
         g.pop();
+
+        if(dirtyTracker != null) {
+            dirtyTracker.end();
+        }
+
+        if(metricsEnabled) {
+            long elapsed = System.nanoTime() - start;
+            metrics.recordDraw(elapsed, chars.size(), backgrounds, effectEvaluations);
+            globalMetrics.recordDraw(elapsed, chars.size(), backgrounds, effectEvaluations);
+        }
+    }
+
+    /**
+     * Identifies the layout format, "STLY"
+     */
+    private static final int LAYOUT_MAGIC = 0x53544C59;
+
+    private static final int LAYOUT_VERSION = 1;
+
+    /**
+     * Writes the processed layout of this SpicyText (characters, positions, lines, colours and effects) in a compact
+     * binary format, along with a fingerprint of the font metrics it was processed with.
+     * The layout can be loaded again with readLayout, skipping all tag parsing, measuring and wrapping, which is useful
+     * for fixed text that can be processed ahead of time (e.g. at build time) or cached on disk.
+     * The stream is not closed.
+     *
+     * @param out the stream to write the layout to
+     * @throws IOException if the layout cannot be written
+     * @see SpicyText#readLayout(PApplet, InputStream, int, SpicyTextTheme)
+     */
+    public void writeLayout(OutputStream out) throws IOException {
+        refreshLayout();
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+
+        data.writeInt(LAYOUT_MAGIC);
+        data.writeInt(LAYOUT_VERSION);
+        data.writeLong(layoutFingerprint(theme.getFont(parent), textSize, theme.newLineMargin));
+
+        data.writeInt(textSize);
+        data.writeInt(maxWidth);
+        writeString(data, rawText);
+
+        data.writeInt(ascent);
+        data.writeInt(textHeight);
+        data.writeInt(lineSpacing);
+        data.writeInt(width);
+        data.writeInt(height);
+
+        data.writeInt(lineLengths.size());
+        for(float length : lineLengths) {
+            data.writeFloat(length);
+        }
+
+        // Each distinct list of effects is written once, and style runs refer to it by id
+        ArrayList<List<String>> effectLists = new ArrayList<>();
+        HashMap<List<String>, Integer> effectIds = new HashMap<>();
+        int[] charEffectIds = new int[chars.size()];
+        for(int i = 0; i < chars.size(); i ++) {
+            List<String> effectList = chars.get(i).effects();
+            Integer id = effectIds.get(effectList);
+            if(id == null) {
+                id = effectLists.size();
+                effectIds.put(effectList, id);
+                effectLists.add(effectList);
+            }
+            charEffectIds[i] = id;
+        }
+
+        data.writeInt(effectLists.size());
+        for(List<String> effectList : effectLists) {
+            data.writeInt(effectList.size());
+            for(String name : effectList) {
+                writeString(data, name);
+            }
+        }
+
+        data.writeInt(chars.size());
+        for(SpicyTextChar c : chars) {
+            data.writeChar(c.c);
+        }
+        for(SpicyTextChar c : chars) {
+            data.writeFloat(c.x);
+        }
+        for(SpicyTextChar c : chars) {
+            data.writeFloat(c.y);
+        }
+        for(SpicyTextChar c : chars) {
+            data.writeInt(c.width);
+        }
+
+        // Style runs: consecutive characters with the same colour, background and effects
+        ArrayList<Integer> runStarts = new ArrayList<>();
+        for(int i = 0; i < chars.size(); i ++) {
+            if(i == 0 || !sameStyle(chars.get(i - 1), charEffectIds[i - 1], chars.get(i), charEffectIds[i])) {
+                runStarts.add(i);
+            }
+        }
+
+        data.writeInt(runStarts.size());
+        for(int start : runStarts) {
+            SpicyTextChar c = chars.get(start);
+            data.writeInt(start);
+            data.writeInt(c.colour);
+            data.writeBoolean(c.themeColour);
+            data.writeInt(c.background);
+            data.writeInt(charEffectIds[start]);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Loads a layout written by writeLayout, without processing the text again.
+     * If the theme's font (including the width of any glyph used) or newLineMargin, or the text size, differ from those
+     * the layout was written with, the stored text is processed again instead, so the result is always correct for the
+     * current font.
+     * The stream is read to the end, but not closed.
+     *
+     * @param parent the parent sketch
+     * @param in the stream to read the layout from
+     * @param textSize the size the text should be displayed at
+     * @param theme An instance of the SpicyTextTheme, which can change the default display behaviour
+     * @return the loaded SpicyText object
+     * @throws IOException if the stream cannot be read, or does not contain a valid layout
+     * @see SpicyText#writeLayout(OutputStream)
+     */
+    public static SpicyText readLayout(PApplet parent, InputStream in, int textSize, SpicyTextTheme theme) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(in.readAllBytes());
+
+        try {
+            if(data.getInt() != LAYOUT_MAGIC || data.getInt() != LAYOUT_VERSION) {
+                throw new IOException("Not a SpicyText layout (or written by a different version)");
+            }
+
+            long fingerprint = data.getLong();
+            int layoutTextSize = data.getInt();
+            int maxWidth = data.getInt();
+            String text = readString(data);
+
+            if(layoutTextSize == textSize && fingerprint == layoutFingerprint(theme.getFont(parent), textSize, theme.newLineMargin)) {
+                SpicyText spicyText = new SpicyText(parent, textSize, maxWidth, theme);
+                if(spicyText.loadLayout(data, text)) {
+                    return spicyText;
+                }
+            }
+
+            return new SpicyText(parent, text, textSize, maxWidth, theme);
+        } catch(BufferUnderflowException e) {
+            throw new IOException("SpicyText layout is truncated", e);
+        }
+    }
+
+    /**
+     * Fills in this (empty) SpicyText from the body of a stored layout.
+     * @return false if any glyph is a different width with the current font, in which case nothing is filled in
+     * @throws IOException if the layout is malformed
+     */
+    private boolean loadLayout(ByteBuffer data, String text) throws IOException {
+        int loadedAscent = data.getInt();
+        int loadedTextHeight = data.getInt();
+        int loadedLineSpacing = data.getInt();
+        int loadedWidth = data.getInt();
+        int loadedHeight = data.getInt();
+
+        float[] lengths = new float[readCount(data, Float.BYTES)];
+        if(lengths.length == 0) {
+            throw new IOException("SpicyText layout has no lines");
+        }
+        data.asFloatBuffer().get(lengths);
+        data.position(data.position() + lengths.length * Float.BYTES);
+
+        ArrayList<ArrayList<String>> effectLists = new ArrayList<>();
+        int effectListCount = readCount(data, Integer.BYTES);
+        for(int i = 0; i < effectListCount; i ++) {
+            int size = readCount(data, Integer.BYTES);
+            ArrayList<String> effectList = new ArrayList<>(size);
+            for(int j = 0; j < size; j ++) {
+                effectList.add(readString(data));
+            }
+            effectLists.add(effectList);
+        }
+
+        int count = readCount(data, Character.BYTES + Float.BYTES * 2 + Integer.BYTES);
+        char[] glyphs = new char[count];
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        int[] widths = new int[count];
+        data.asCharBuffer().get(glyphs);
+        data.position(data.position() + count * Character.BYTES);
+        data.asFloatBuffer().get(xs);
+        data.position(data.position() + count * Float.BYTES);
+        data.asFloatBuffer().get(ys);
+        data.position(data.position() + count * Float.BYTES);
+        data.asIntBuffer().get(widths);
+        data.position(data.position() + count * Integer.BYTES);
+
+        // The fingerprint only covers the font as a whole, so check every distinct glyph is still measured the same
+        HashMap<Character, Integer> measured = new HashMap<>();
+        for(int i = 0; i < count; i ++) {
+            Integer glyphWidth = measured.get(glyphs[i]);
+            if(glyphWidth == null) {
+                glyphWidth = (int)theme.textWidth(parent, String.valueOf(glyphs[i]), textSize);
+                measured.put(glyphs[i], glyphWidth);
+            }
+            if(glyphWidth != widths[i]) {
+                return false;
+            }
+        }
+
+        // The fingerprint matched, so the vertical metrics must be those of the current font
+        PFont font = theme.getFont(parent);
+        int expectedAscent = (int)(textSize * font.ascent());
+        int expectedTextHeight = expectedAscent + (int)(textSize * font.descent());
+        if(loadedLineSpacing <= 0 || loadedAscent != expectedAscent || loadedTextHeight != expectedTextHeight
+                || loadedLineSpacing != expectedTextHeight + theme.newLineMargin) {
+            throw new IOException("SpicyText layout line metrics don't match its font");
+        }
+
+        // The line table and hit-testing rely on characters being in line order, and in x order within each line
+        int prevLine = 0;
+        for(int i = 0; i < count; i ++) {
+            if(!Float.isFinite(ys[i]) || !Float.isFinite(xs[i])) {
+                throw new IOException("SpicyText layout has an invalid character position at " + i);
+            }
+            int charLine = Math.round(ys[i] / loadedLineSpacing);
+            if(charLine < prevLine || charLine >= lengths.length) {
+                throw new IOException("SpicyText layout has a character on an invalid line at " + i + ": " + charLine);
+            }
+            if(i > 0 && charLine == prevLine && xs[i] < xs[i - 1]) {
+                throw new IOException("SpicyText layout has characters out of order at " + i);
+            }
+            prevLine = charLine;
+        }
+
+        // Each run is a start index, colour, theme colour flag, background and effect list id
+        int runCount = readCount(data, Integer.BYTES * 4 + 1);
+        if((runCount == 0) != (count == 0)) {
+            throw new IOException("SpicyText layout style runs don't cover its characters");
+        }
+
+        ArrayList<SpicyTextChar> loadedChars = new ArrayList<>(count);
+        int runStart = runCount > 0 ? data.getInt() : 0;
+        if(runStart != 0) {
+            throw new IOException("SpicyText layout style runs don't start at the first character");
+        }
+        for(int run = 0; run < runCount; run ++) {
+            int colour = data.getInt();
+            boolean themeColour = data.get() != 0;
+            int background = data.getInt();
+            int effectId = data.getInt();
+            if(effectId < 0 || effectId >= effectLists.size()) {
+                throw new IOException("SpicyText layout refers to an unknown effect list: " + effectId);
+            }
+            ArrayList<String> effectList = effectLists.get(effectId);
+
+            int runEnd = run + 1 < runCount ? data.getInt() : count;
+            if(runEnd <= runStart || runEnd > count) {
+                throw new IOException("SpicyText layout style run out of order: " + runStart + " to " + runEnd);
+            }
+
+            for(int i = runStart; i < runEnd; i ++) {
+                loadedChars.add(new SpicyTextChar(glyphs[i], colour, themeColour, background, i, xs[i], ys[i], widths[i], loadedTextHeight, effectList));
+            }
+            runStart = runEnd;
+        }
+
+        rawText = text;
+        layoutFont = theme.font;
+        layoutNewLineMargin = theme.newLineMargin;
+
+        ascent = loadedAscent;
+        textHeight = loadedTextHeight;
+        lineSpacing = loadedLineSpacing;
+        width = loadedWidth;
+        height = loadedHeight;
+
+        lineLengths = new ArrayList<>(lengths.length);
+        for(float length : lengths) {
+            lineLengths.add(length);
+        }
+        chars = loadedChars;
+
+        buildLineStarts();
+        return true;
+    }
+
+    /**
+     * Reads the number of items that follow, checking there is room left for them.
+     * @param minBytes the fewest bytes each item can take up
+     */
+    private static int readCount(ByteBuffer data, int minBytes) throws IOException {
+        int count = data.getInt();
+        if(count < 0 || (long)count * minBytes > data.remaining()) {
+            throw new IOException("SpicyText layout has an invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static boolean sameStyle(SpicyTextChar a, int aEffects, SpicyTextChar b, int bEffects) {
+        return a.colour == b.colour && a.themeColour == b.themeColour && a.background == b.background && aEffects == bEffects;
+    }
+
+    /**
+     * Combines everything that affects where characters are placed into one value, so a stored layout can be checked
+     * against the current font before being used. Glyph widths are checked separately, for the glyphs actually used.
+     */
+    private static long layoutFingerprint(PFont font, int textSize, int newLineMargin) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ String.valueOf(font.getName()).hashCode()) * 0x100000001b3L;
+        hash = (hash ^ textSize) * 0x100000001b3L;
+        hash = (hash ^ newLineMargin) * 0x100000001b3L;
+        hash = (hash ^ Float.floatToIntBits(font.ascent())) * 0x100000001b3L;
+        hash = (hash ^ Float.floatToIntBits(font.descent())) * 0x100000001b3L;
+        return hash;
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(ByteBuffer data) throws IOException {
+        byte[] bytes = new byte[readCount(data, 1)];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
     }
 
     private static class ProcessingParams {
@@ -315,6 +985,15 @@ public class SpicyText implements PConstants {
     private void processText() {
         chars = new ArrayList<>();
         lineLengths = new ArrayList<>();
+
+        PFont font = theme.getFont(parent);
+        ascent = (int)(textSize * font.ascent());
+        int descent = (int)(textSize * font.descent());
+        textHeight = ascent + descent;
+
+        layoutFont = theme.font;
+        layoutNewLineMargin = theme.newLineMargin;
+        lineSpacing = textHeight + theme.newLineMargin;
         StringTokenizer tokenizer = new StringTokenizer(rawText);
 
         ProcessingParams params = new ProcessingParams();
@@ -358,7 +1037,8 @@ public class SpicyText implements PConstants {
                         continue;
                     }
 
-                    chars.add(new SpicyTextChar(c, parent.color(params.colourStack.get(params.colourStack.size() - 1)), params.backgroundStack.get(params.backgroundStack.size() - 1), params.index, params.x, params.y, charWidth, textHeight, params.effectStack));
+                    boolean themeColour = params.colourStack.size() == 1;
+                    chars.add(new SpicyTextChar(c, parent.color(params.colourStack.get(params.colourStack.size() - 1)), themeColour, params.backgroundStack.get(params.backgroundStack.size() - 1), params.index, params.x, params.y, charWidth, textHeight, params.effectStack));
 
                     if((maxWidth != -1 && params.x + charWidth >= maxWidth)) {
                         if(lastSpace == params.index) {
@@ -393,13 +1073,40 @@ public class SpicyText implements PConstants {
         width = (int)PApplet.max(width, params.x);
         height = (int)params.y + textHeight;
         lineLengths.add(params.x);
+
+        buildLineStarts();
+    }
+
+    private void buildLineStarts() {
+        lineStarts = new int[lineLengths.size() + 1];
+
+        int line = 0;
+        for(int i = 0; i < chars.size(); i ++) {
+            int charLine = lineIndex(chars.get(i).y);
+            while(line < charLine) {
+                line ++;
+                lineStarts[line] = i;
+            }
+        }
+        while(line < lineLengths.size()) {
+            line ++;
+            lineStarts[line] = chars.size();
+        }
+    }
+
+    private int lineIndex(float y) {
+        return Math.round(y / lineSpacing);
+    }
+
+    private float lineOffset(int alignH, int line) {
+        return xAlignOffset(alignH, (int)(lineLengths.get(line).floatValue()));
     }
 
     private void newLine(ProcessingParams params) {
         lineLengths.add(params.x);
         width = (int)PApplet.max(width, params.x);
         params.x = 0;
-        params.y += textHeight + theme.newLineMargin;
+        params.y += lineSpacing;
     }
 
     private void parseToken(String token, ProcessingParams params) {
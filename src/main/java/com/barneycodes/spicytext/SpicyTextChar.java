@@ -3,6 +3,7 @@ package com.barneycodes.spicytext;
 import processing.core.PApplet;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiConsumer;
 
 /**
@@ -25,6 +26,11 @@ public class SpicyTextChar {
      */
     public final int colour;
 
+    /**
+     * True if the text colour comes from the theme (no [COLOUR=...] tag applies to this character), in which case the
+     * theme's current text colour is used when drawing instead
+     */
+    final boolean themeColour;
 
     /**
      * Base (no effects added) colour of the background
@@ -55,6 +61,7 @@ public class SpicyTextChar {
      * Store processed information for a given character in a SpicyText object.
      * @param c the character literal
      * @param colour the text colour to be displayed
+     * @param themeColour whether the colour is the theme's text colour rather than from a [COLOUR=...] tag
      * @param background the background colour to be used (ignored if -1)
      * @param index the index of the character in the displayed SpicyText text
      * @param x the x position in pixels of this character, relative to the origin (the top-left of the SpicyText)
@@ -64,9 +71,10 @@ public class SpicyTextChar {
      * @param effects a list of the names of all the effects to be applied to this character
      * @see SpicyText#effects
      */
-    SpicyTextChar(char c, int colour, int background, int index, float x, float y, int width, int height, ArrayList<String> effects) {
+    SpicyTextChar(char c, int colour, boolean themeColour, int background, int index, float x, float y, int width, int height, ArrayList<String> effects) {
         this.c = c;
         this.colour = colour;
+        this.themeColour = themeColour;
         this.background = background;
         this.height = height;
         this.width = width;
@@ -87,7 +95,19 @@ public class SpicyTextChar {
      * @return CharEffectParams with all effects applied
      */
     protected CharEffectParams applyEffects(int time) {
-        CharEffectParams params = new CharEffectParams(this, time);
+        return applyEffects(time, colour, background);
+    }
+
+    /**
+     * Creates a CharEffectParams object with all effects for this character applied, starting from the given colours
+     * rather than the ones the character was processed with (e.g. after the theme has changed).
+     * @param time timing offset for animations
+     * @param colour the base text colour
+     * @param background the base background colour (ignored if -1)
+     * @return CharEffectParams with all effects applied
+     */
+    CharEffectParams applyEffects(int time, int colour, int background) {
+        CharEffectParams params = new CharEffectParams(this, time, colour, background);
 
         for(String effectName : effects) {
             BiConsumer<SpicyTextChar, CharEffectParams> effect = SpicyText.effects.get(effectName);
@@ -95,8 +115,17 @@ public class SpicyTextChar {
                 continue;
             }
             effect.accept(this, params);
+            params.effectsApplied ++;
         }
 
         return params;
     }
+
+    /**
+     * Gets the names of the effects applied to this character.
+     * @return the effect names, which must not be modified
+     */
+    List<String> effects() {
+        return effects;
+    }
 }
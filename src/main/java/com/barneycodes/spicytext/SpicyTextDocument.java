@@ -0,0 +1,483 @@
+package com.barneycodes.spicytext;
+
+import processing.core.PApplet;
+import processing.core.PFont;
+import processing.core.PGraphics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Displays very large tagged texts (e.g. loaded from a file) without processing all of it up front.
+ * The text is split into pages of whole lines, and each page is only processed into a SpicyText when it is scrolled
+ * into view. Pages that have not been drawn recently are dropped, and processed again if they come back into view.
+ * Any [COLOUR=...], [BACKGROUND=...] and [EFFECT=...] tags that are still open at the end of a page carry on into the
+ * next page, so the text displays the same as it would as a single SpicyText.
+ * NOTE: Character indexes (as used by effects such as WAVE) start again from 0 on each page.
+ * NOTE: Until a page has been processed its height is estimated from its number of lines, so the total height can
+ * grow as pages with wrapped lines are scrolled into view.
+ *
+ * @see SpicyText
+ */
+public class SpicyTextDocument {
+
+    /**
+     * Default number of lines of source text in each page
+     */
+    public static final int DEFAULT_LINES_PER_PAGE = 64;
+
+    /**
+     * Default number of processed pages to keep
+     */
+    public static final int DEFAULT_MAX_CACHED_PAGES = 8;
+
+    private final PApplet parent;
+    private final int textSize;
+    private final int maxWidth;
+    private final SpicyTextTheme theme;
+
+    private final ArrayList<Page> pages = new ArrayList<>();
+
+    /**
+     * The memory-mapped file the text is read from, or null if the text was read from a Reader
+     */
+    private final ByteBuffer source;
+
+    private int maxCachedPages = DEFAULT_MAX_CACHED_PAGES;
+
+    /**
+     * Processed pages, in least to most recently drawn order
+     */
+    private final LinkedHashMap<Integer, SpicyText> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, SpicyText> eldest) {
+            return size() > maxCachedPages;
+        }
+    };
+
+    /**
+     * Document position of the top of each page (plus the bottom of the last page), recalculated when page heights change
+     */
+    private float[] pageTops;
+
+    /**
+     * The theme's layout properties as they were when the page heights were measured
+     */
+    private PFont layoutFont;
+    private int layoutNewLineMargin;
+
+    /**
+     * Creates a document from all the text in the given Reader, with text wrapping and with a custom theme.
+     * The Reader is read to the end (but not closed) straight away, but none of the text is processed until drawn.
+     *
+     * @param parent the parent sketch
+     * @param reader the text to be displayed
+     * @param textSize the size the text should be displayed at
+     * @param maxWidth the maximum line length before text wrapping occurs (in pixels), or -1 for no wrapping
+     * @param theme An instance of the SpicyTextTheme, which can change the default display behaviour
+     * @throws IOException if the Reader cannot be read
+     */
+    public SpicyTextDocument(PApplet parent, Reader reader, int textSize, int maxWidth, SpicyTextTheme theme) throws IOException {
+        this(parent, reader, textSize, maxWidth, theme, DEFAULT_LINES_PER_PAGE);
+    }
+
+    /**
+     * Creates a document from all the text in the given Reader, with text wrapping, a custom theme and page size.
+     * The Reader is read to the end (but not closed) straight away, but none of the text is processed until drawn.
+     *
+     * @param parent the parent sketch
+     * @param reader the text to be displayed
+     * @param textSize the size the text should be displayed at
+     * @param maxWidth the maximum line length before text wrapping occurs (in pixels), or -1 for no wrapping
+     * @param theme An instance of the SpicyTextTheme, which can change the default display behaviour
+     * @param linesPerPage how many lines of the source text (before wrapping) go in each page
+     * @throws IOException if the Reader cannot be read
+     */
+    public SpicyTextDocument(PApplet parent, Reader reader, int textSize, int maxWidth, SpicyTextTheme theme, int linesPerPage) throws IOException {
+        this.parent = parent;
+        this.textSize = textSize;
+        this.maxWidth = maxWidth;
+        this.theme = theme;
+        this.source = null;
+
+        BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
+        scan(buffered::read, linesPerPage, true);
+    }
+
+    /**
+     * Creates a document from a UTF-8 text file, with text wrapping and with a custom theme.
+     * The file is memory-mapped rather than read into memory, and each page's text is only read from it when the page
+     * is processed.
+     *
+     * @param parent the parent sketch
+     * @param file the UTF-8 encoded text file to be displayed
+     * @param textSize the size the text should be displayed at
+     * @param maxWidth the maximum line length before text wrapping occurs (in pixels), or -1 for no wrapping
+     * @param theme An instance of the SpicyTextTheme, which can change the default display behaviour
+     * @throws IOException if the file cannot be read, or is larger than 2GB
+     */
+    public SpicyTextDocument(PApplet parent, File file, int textSize, int maxWidth, SpicyTextTheme theme) throws IOException {
+        this(parent, file, textSize, maxWidth, theme, DEFAULT_LINES_PER_PAGE);
+    }
+
+    /**
+     * Creates a document from a UTF-8 text file, with text wrapping, a custom theme and page size.
+     * The file is memory-mapped rather than read into memory, and each page's text is only read from it when the page
+     * is processed. Files larger than 2GB (Integer.MAX_VALUE bytes) are not supported, since they can't be mapped in
+     * one piece.
+     *
+     * @param parent the parent sketch
+     * @param file the UTF-8 encoded text file to be displayed
+     * @param textSize the size the text should be displayed at
+     * @param maxWidth the maximum line length before text wrapping occurs (in pixels), or -1 for no wrapping
+     * @param theme An instance of the SpicyTextTheme, which can change the default display behaviour
+     * @param linesPerPage how many lines of the source text (before wrapping) go in each page
+     * @throws IOException if the file cannot be read, or is larger than 2GB
+     */
+    public SpicyTextDocument(PApplet parent, File file, int textSize, int maxWidth, SpicyTextTheme theme, int linesPerPage) throws IOException {
+        this.parent = parent;
+        this.textSize = textSize;
+        this.maxWidth = maxWidth;
+        this.theme = theme;
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Text file is too large for a SpicyTextDocument (over 2GB): " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.source = mapped;
+        }
+
+        // '\n', '[' and ']' never appear inside multi-byte UTF-8 characters, so the bytes can be scanned directly
+        ByteBuffer scanning = source.duplicate();
+        scan(() -> scanning.hasRemaining() ? scanning.get() & 0xFF : -1, linesPerPage, false);
+    }
+
+    /**
+     * Sets how many processed pages are kept. Pages beyond this are dropped, least recently drawn first.
+     * This should be at least the number of pages visible at once, or pages will be processed again every frame.
+     *
+     * @param maxCachedPages the number of processed pages to keep
+     */
+    public void setMaxCachedPages(int maxCachedPages) {
+        this.maxCachedPages = PApplet.max(1, maxCachedPages);
+        while(cache.size() > this.maxCachedPages) {
+            cache.remove(cache.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Gets the number of pages the text has been split into.
+     *
+     * @return the number of pages
+     */
+    public int pageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Gets the number of pages that are currently processed and kept in memory.
+     *
+     * @return the number of processed pages
+     */
+    public int cachedPageCount() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the height of the whole document in pixels.
+     * Pages that have not been processed yet use an estimated height (which does not include any text wrapping).
+     *
+     * @return the height of the document
+     */
+    public float height() {
+        float[] tops = pageTops();
+        return PApplet.max(0, tops[pages.size()] - theme.newLineMargin);
+    }
+
+    /**
+     * Displays the part of the document between scrollY and scrollY + viewHeight, with the top left of that part at the
+     * given position. Only the pages in that part are processed and drawn. Pages are drawn whole, so use clip() if
+     * nothing should be drawn outside the view.
+     *
+     * @param x horizontal position in pixels
+     * @param y vertical position in pixels
+     * @param scrollY how far down the document (in pixels) the view starts
+     * @param viewHeight the height of the view in pixels
+     */
+    public void draw(float x, float y, float scrollY, float viewHeight) {
+        draw(parent.g, x, y, scrollY, viewHeight);
+    }
+
+    /**
+     * Displays the part of the document between scrollY and scrollY + viewHeight on the given PGraphics object, with
+     * the top left of that part at the given position. Only the pages in that part are processed and drawn. Pages are
+     * drawn whole, so use clip() if nothing should be drawn outside the view.
+     *
+     * @param g the PGraphics object for the document to be drawn onto
+     * @param x horizontal position in pixels
+     * @param y vertical position in pixels
+     * @param scrollY how far down the document (in pixels) the view starts
+     * @param viewHeight the height of the view in pixels
+     * @see PGraphics
+     */
+    public void draw(PGraphics g, float x, float y, float scrollY, float viewHeight) {
+        if(pages.isEmpty()) {
+            return;
+        }
+
+        int pageIndex = firstPageBelow(scrollY);
+        float viewBottom = scrollY + viewHeight;
+
+        while(pageIndex < pages.size()) {
+            // Processing a page can change its height, so the tops are looked up again for each page
+            float top = pageTops()[pageIndex];
+            if(top >= viewBottom) {
+                break;
+            }
+
+            getPage(pageIndex).draw(g, x, y + top - scrollY);
+            pageIndex ++;
+        }
+    }
+
+    /**
+     * Finds the page that contains the given document position (or the last page, if it is past the end).
+     */
+    private int firstPageBelow(float documentY) {
+        float[] tops = pageTops();
+        int low = 0;
+        int high = pages.size() - 1;
+        int found = 0;
+
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(tops[mid] <= documentY) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private SpicyText getPage(int index) {
+        SpicyText text = cache.get(index);
+        Page page = pages.get(index);
+
+        if(text == null) {
+            text = new SpicyText(parent, page.openTags + pageText(page), textSize, maxWidth, theme);
+            cache.put(index, text);
+        } else {
+            text.refreshLayout();
+        }
+
+        float advance = text.height() + theme.newLineMargin;
+        if(advance != page.advance) {
+            page.advance = advance;
+            pageTops = null;
+        }
+        return text;
+    }
+
+    private String pageText(Page page) {
+        String text;
+        if(page.text != null) {
+            text = page.text;
+        } else {
+            ByteBuffer bytes = source.duplicate();
+            bytes.position(page.start).limit(page.end);
+            text = StandardCharsets.UTF_8.decode(bytes).toString();
+        }
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private float[] pageTops() {
+        if(theme.font != layoutFont || theme.newLineMargin != layoutNewLineMargin) {
+            // Every measured height (and the estimate) is out of date, including pages that are no longer cached
+            for(Page page : pages) {
+                page.advance = -1;
+            }
+            layoutFont = theme.font;
+            layoutNewLineMargin = theme.newLineMargin;
+            pageTops = null;
+        }
+
+        if(pageTops == null) {
+            pageTops = new float[pages.size() + 1];
+            float estimatedAdvance = estimatedLineSpacing();
+
+            for(int i = 0; i < pages.size(); i ++) {
+                Page page = pages.get(i);
+                float advance = page.advance >= 0 ? page.advance : page.lines * estimatedAdvance;
+                pageTops[i + 1] = pageTops[i] + advance;
+            }
+        }
+        return pageTops;
+    }
+
+    private float estimatedLineSpacing() {
+        PFont font = theme.getFont(parent);
+        int ascent = (int)(textSize * font.ascent());
+        int descent = (int)(textSize * font.descent());
+        return ascent + descent + theme.newLineMargin;
+    }
+
+    /**
+     * A section of the text made up of whole lines
+     */
+    private static class Page {
+        /**
+         * Tags that are still open from the previous pages
+         */
+        private final String openTags;
+
+        /**
+         * Number of lines of source text (before wrapping)
+         */
+        private final int lines;
+
+        /**
+         * The text of the page when read from a Reader, otherwise null
+         */
+        private final String text;
+
+        /**
+         * Byte range of the page's text in the memory-mapped file
+         */
+        private final int start, end;
+
+        /**
+         * Distance from the top of this page to the top of the next, or -1 if the page hasn't been processed yet
+         */
+        private float advance = -1;
+
+        private Page(String openTags, int lines, String text, int start, int end) {
+            this.openTags = openTags;
+            this.lines = lines;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private interface CharSource {
+        int read() throws IOException;
+    }
+
+    /**
+     * Splits the source into pages, keeping track of which tags are open at the start of each page.
+     * Tags are handled the same way as SpicyText.parseToken, but only their raw text is kept.
+     */
+    private void scan(CharSource in, int linesPerPage, boolean keepText) throws IOException {
+        ArrayList<String> colourStack = new ArrayList<>();
+        ArrayList<String> backgroundStack = new ArrayList<>();
+        ArrayList<String> effectStack = new ArrayList<>();
+
+        StringBuilder text = keepText ? new StringBuilder() : null;
+        StringBuilder tag = new StringBuilder();
+        boolean inTag = false;
+        boolean asciiTag = true;
+
+        String openTags = "";
+        int pageStart = 0;
+        int lines = 1;
+        int position = 0;
+
+        int next;
+        while((next = in.read()) != -1) {
+            position ++;
+
+            if(!inTag && next == '\n' && lines >= linesPerPage) {
+                pages.add(new Page(openTags, lines, keepText ? text.toString() : null, pageStart, position - 1));
+                openTags = openTags(colourStack, backgroundStack, effectStack);
+                pageStart = position;
+                lines = 1;
+                if(keepText) {
+                    text.setLength(0);
+                }
+                continue;
+            }
+
+            if(keepText) {
+                text.append((char)next);
+            }
+
+            if(inTag) {
+                if(next == ']') {
+                    // Multi-byte characters in a tag need decoding properly from the file (Readers give whole characters)
+                    String token = keepText || asciiTag ? tag.toString() : decode(position - 1 - tag.length(), position - 1);
+                    applyTag(token, colourStack, backgroundStack, effectStack);
+                    inTag = false;
+                } else {
+                    tag.append((char)next);
+                    asciiTag &= next < 0x80;
+                }
+            } else if(next == '[') {
+                inTag = true;
+                asciiTag = true;
+                tag.setLength(0);
+            } else if(next == '\n') {
+                lines ++;
+            }
+        }
+
+        pages.add(new Page(openTags, lines, keepText ? text.toString() : null, pageStart, position));
+    }
+
+    private String decode(int start, int end) {
+        ByteBuffer bytes = source.duplicate();
+        bytes.position(start).limit(end);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private static void applyTag(String token, ArrayList<String> colourStack, ArrayList<String> backgroundStack, ArrayList<String> effectStack) {
+        String[] parts = token.split("=");
+
+        if(parts.length == 1) {
+            switch(parts[0]) {
+                case "END_COLOUR": if(!colourStack.isEmpty()) colourStack.remove(colourStack.size() - 1); break;
+
+                case "END_BACKGROUND": if(!backgroundStack.isEmpty()) backgroundStack.remove(backgroundStack.size() - 1); break;
+
+                case "END_EFFECT": if(!effectStack.isEmpty()) effectStack.remove(effectStack.size() - 1); break;
+            }
+        }
+
+        if(parts.length == 2) {
+            switch(parts[0]) {
+                case "COLOUR": colourStack.add(token); break;
+
+                case "BACKGROUND": backgroundStack.add(token); break;
+
+                case "EFFECT": effectStack.add(token); break;
+            }
+        }
+    }
+
+    private static String openTags(ArrayList<String> colourStack, ArrayList<String> backgroundStack, ArrayList<String> effectStack) {
+        StringBuilder tags = new StringBuilder();
+        for(String tag : colourStack) {
+            tags.append('[').append(tag).append(']');
+        }
+        for(String tag : backgroundStack) {
+            tags.append('[').append(tag).append(']');
+        }
+        for(String tag : effectStack) {
+            tags.append('[').append(tag).append(']');
+        }
+        return tags.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.barneycodes.spicytext;
+
+/**
+ * A snapshot of the rendering counters and timings collected for a SpicyText object (or for all SpicyText objects
+ * combined).
+ * Metrics are only collected while they are enabled, and the values in a snapshot never change after it is taken.
+ *
+ * @see SpicyText#setMetricsEnabled(boolean)
+ * @see SpicyText#metrics()
+ * @see SpicyText#globalMetrics()
+ */
+public class SpicyTextMetrics {
+
+    /**
+     * Number of times the text has been processed (parsed, measured and wrapped)
+     */
+    public final long layouts;
+
+    /**
+     * Total time spent processing text, in nanoseconds
+     */
+    public final long layoutNanos;
+
+    /**
+     * Number of times setText was called with unchanged text, so no processing was needed
+     */
+    public final long cacheHits;
+
+    /**
+     * Number of times the text has been drawn
+     */
+    public final long draws;
+
+    /**
+     * Total time spent drawing, in nanoseconds
+     */
+    public final long drawNanos;
+
+    /**
+     * Number of characters drawn (drop shadows are not counted separately)
+     */
+    public final long glyphsDrawn;
+
+    /**
+     * Number of character backgrounds drawn
+     */
+    public final long backgroundsDrawn;
+
+    /**
+     * Number of effect functions applied to characters
+     */
+    public final long effectEvaluations;
+
+    SpicyTextMetrics(long layouts, long layoutNanos, long cacheHits, long draws, long drawNanos, long glyphsDrawn, long backgroundsDrawn, long effectEvaluations) {
+        this.layouts = layouts;
+        this.layoutNanos = layoutNanos;
+        this.cacheHits = cacheHits;
+        this.draws = draws;
+        this.drawNanos = drawNanos;
+        this.glyphsDrawn = glyphsDrawn;
+        this.backgroundsDrawn = backgroundsDrawn;
+        this.effectEvaluations = effectEvaluations;
+    }
+
+    /**
+     * Gets the average time taken to process the text.
+     *
+     * @return average layout time in milliseconds, or 0 if no layouts have been recorded
+     */
+    public double averageLayoutMillis() {
+        return layouts == 0 ? 0 : layoutNanos / 1e6 / layouts;
+    }
+
+    /**
+     * Gets the average time taken to draw the text.
+     *
+     * @return average draw time in milliseconds, or 0 if no draws have been recorded
+     */
+    public double averageDrawMillis() {
+        return draws == 0 ? 0 : drawNanos / 1e6 / draws;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "layouts=%d (avg %.3fms), cacheHits=%d, draws=%d (avg %.3fms), glyphs=%d, backgrounds=%d, effects=%d",
+                layouts, averageLayoutMillis(), cacheHits, draws, averageDrawMillis(), glyphsDrawn, backgroundsDrawn, effectEvaluations
+        );
+    }
+}
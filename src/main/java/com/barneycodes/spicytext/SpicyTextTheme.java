@@ -3,29 +3,46 @@ package com.barneycodes.spicytext;
 import processing.core.PApplet;
 import processing.core.PFont;
 
+import java.util.HashMap;
+
 /**
  * Holds values required for the drawing of a SpicyText object.
  * The SpicyTextTheme is initialised with default values, but these can be changed before being passed to the SpicyText
- * constructor
+ * constructor.
+ * Properties are either layout properties (font and newLineMargin), which change the size and position of characters,
+ * or paint properties (everything else, including colour remaps), which only change how they are drawn.
+ * Paint properties can be changed at any time and take effect on the next draw. Changing a layout property causes
+ * every SpicyText using this theme to process its text again on its next draw.
  * @see SpicyText#SpicyText(PApplet, String, int, SpicyTextTheme)
  * @see SpicyText#SpicyText(PApplet, String, int, int, SpicyTextTheme)
  */
 public class SpicyTextTheme {
 
-    /**
-     * Base text colour
-     */
-    public int textColour = 0;
+    // Layout properties
 
     /**
      * The font to draw the text in.
      * If no font is supplied, the default font will be used.
-     * NOTE: Changing this AFTER a SpicyText has been created will have strange effects (unless setText is also called),
-     * since the text is processed on initialisation with the original font (different fonts have different widths/heights).
-     * SpicyText objects created AFTER this is changed, using this theme, will use the new font.
+     * This is a layout property: changing it makes SpicyText objects using this theme process their text again on their
+     * next draw, since different fonts have different widths/heights.
      */
     public PFont font = null;
 
+    /**
+     * How much of a gap to leave between the bottom of the previous line and the top of the next line.
+     * (The actual SIZE of the text is already taken into account, this value is JUST the gap!)
+     * This is a layout property: changing it makes SpicyText objects using this theme process their text again on their
+     * next draw.
+     */
+    public int newLineMargin = 4;
+
+    // Paint properties
+
+    /**
+     * Base text colour, used for any text not inside [COLOUR=...] tags
+     */
+    public int textColour = 0;
+
     /**
      * Diagonal offset applied to shadow text. An offset of 0 will not draw any shadow.
      */
@@ -46,15 +63,54 @@ public class SpicyTextTheme {
      */
     public int cornerRadius = 4;
 
+    /**
+     * Colours to swap when drawing, mapping the colour from a [COLOUR=...]/[BACKGROUND=...] tag to the colour to draw
+     */
+    private final HashMap<Integer, Integer> colourRemaps = new HashMap<>();
 
     /**
-     * How much of a gap to leave between the bottom of the previous line and the top of the next line.
-     * (The actual SIZE of the text is already taken into account, this value is JUST the gap!)
-     * NOTE: Changing this AFTER a SpicyText has been created will have no effect (unless setText is called), since the
-     * text is processed on initialisation. SpicyText objects created AFTER this is changed, using this theme, will
-     * be effected.
+     * Draws every character that would be drawn in one colour in another colour instead (e.g. for switching between
+     * day and night palettes). This applies to [COLOUR=...] and [BACKGROUND=...] tag colours as well as the textColour.
+     * This is a paint property, so it takes effect on the next draw without the text being processed again.
+     * Colours are matched exactly, so use full ARGB colours (e.g. from color(...) or #FFRRGGBB tags).
+     *
+     * @param from the colour used in the text
+     * @param to the colour to draw instead
      */
-    public int newLineMargin = 4;
+    public void remapColour(int from, int to) {
+        colourRemaps.put(from, to);
+    }
+
+    /**
+     * Removes a colour remap, so the original colour is drawn again.
+     *
+     * @param from the colour used in the text
+     * @see SpicyTextTheme#remapColour(int, int)
+     */
+    public void clearColourRemap(int from) {
+        colourRemaps.remove(from);
+    }
+
+    /**
+     * Removes all colour remaps.
+     *
+     * @see SpicyTextTheme#remapColour(int, int)
+     */
+    public void clearColourRemaps() {
+        colourRemaps.clear();
+    }
+
+    /**
+     * Gets the colour to draw in place of the given colour.
+     * @param colour the colour used in the text
+     * @return the remapped colour, or the given colour if it isn't remapped
+     */
+    protected int resolveColour(int colour) {
+        if(colourRemaps.isEmpty()) {
+            return colour;
+        }
+        return colourRemaps.getOrDefault(colour, colour);
+    }
 
 
     /**
@@ -0,0 +1,25 @@
+package com.barneycodes.spicytext;
+
+import processing.core.PFont;
+
+/**
+ * A PFont with fixed metrics, so text can be measured without loading a real font (and without AWT).
+ * Every character is half the text size wide.
+ */
+class FixedWidthFont extends PFont {
+
+    @Override
+    public float ascent() {
+        return 0.8f;
+    }
+
+    @Override
+    public float descent() {
+        return 0.2f;
+    }
+
+    @Override
+    public float width(char c) {
+        return 0.5f;
+    }
+}
@@ -0,0 +1,180 @@
+package com.barneycodes.spicytext;
+
+import processing.core.PFont;
+import processing.core.PGraphics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A headless PGraphics test double that records the drawing calls made on it instead of rendering anything.
+ * Only the calls SpicyText is expected to make (text, rect, fill, push/pop and transforms, plus the text set up
+ * calls) are recorded. None of them call through to PGraphics, so no renderer or display is needed.
+ */
+class RecordingGraphics extends PGraphics {
+
+    private final List<String> calls = new ArrayList<>();
+    private final Map<String, Integer> counts = new HashMap<>();
+    private final List<float[]> translations = new ArrayList<>();
+
+    /**
+     * Sets the default colour mode, so the graphics can be used as a sketch's g to convert colours (only the colour
+     * mode fields are set, nothing needs a renderer).
+     */
+    RecordingGraphics() {
+        colorMode(RGB, 255);
+    }
+
+    private void record(String call) {
+        calls.add(call);
+        counts.merge(call, 1, Integer::sum);
+    }
+
+    /**
+     * Gets how many times the named call has been made since the last reset.
+     *
+     * @param call the name of the PGraphics method (e.g. "text", "push")
+     * @return the number of recorded calls with the given name
+     */
+    int count(String call) {
+        return counts.getOrDefault(call, 0);
+    }
+
+    /**
+     * Gets the total number of recorded calls since the last reset.
+     *
+     * @return the number of recorded calls
+     */
+    int total() {
+        return calls.size();
+    }
+
+    /**
+     * Gets the names of all recorded calls, in the order they were made.
+     *
+     * @return the recorded call names
+     */
+    List<String> calls() {
+        return calls;
+    }
+
+    /**
+     * Gets the x/y arguments of every 2D translate call, in the order they were made.
+     *
+     * @return the recorded translations
+     */
+    List<float[]> translations() {
+        return translations;
+    }
+
+    /**
+     * Clears all recorded calls.
+     */
+    void reset() {
+        calls.clear();
+        counts.clear();
+        translations.clear();
+    }
+
+    @Override
+    public String toString() {
+        return counts.toString();
+    }
+
+    // Style and matrix stack
+
+    @Override
+    public void push() { record("push"); }
+
+    @Override
+    public void pop() { record("pop"); }
+
+    @Override
+    public void pushMatrix() { record("pushMatrix"); }
+
+    @Override
+    public void popMatrix() { record("popMatrix"); }
+
+    @Override
+    public void pushStyle() { record("pushStyle"); }
+
+    @Override
+    public void popStyle() { record("popStyle"); }
+
+    // Transforms
+
+    @Override
+    public void translate(float x, float y) {
+        record("translate");
+        translations.add(new float[] {x, y});
+    }
+
+    @Override
+    public void translate(float x, float y, float z) { record("translate"); }
+
+    @Override
+    public void rotate(float angle) { record("rotate"); }
+
+    @Override
+    public void scale(float s) { record("scale"); }
+
+    @Override
+    public void scale(float x, float y) { record("scale"); }
+
+    // Colour
+
+    @Override
+    public void fill(int rgb) { record("fill"); }
+
+    @Override
+    public void fill(int rgb, float alpha) { record("fill"); }
+
+    @Override
+    public void fill(float gray) { record("fill"); }
+
+    @Override
+    public void fill(float gray, float alpha) { record("fill"); }
+
+    @Override
+    public void fill(float v1, float v2, float v3) { record("fill"); }
+
+    @Override
+    public void fill(float v1, float v2, float v3, float alpha) { record("fill"); }
+
+    @Override
+    public void noStroke() { record("noStroke"); }
+
+    // Shapes and text
+
+    @Override
+    public void rect(float a, float b, float c, float d) { record("rect"); }
+
+    @Override
+    public void rect(float a, float b, float c, float d, float r) { record("rect"); }
+
+    @Override
+    public void rect(float a, float b, float c, float d, float tl, float tr, float br, float bl) { record("rect"); }
+
+    @Override
+    public void text(char c, float x, float y) { record("text"); }
+
+    @Override
+    public void text(String str, float x, float y) { record("text"); }
+
+    @Override
+    public void text(char[] chars, int start, int stop, float x, float y) { record("text"); }
+
+    @Override
+    public void textAlign(int alignX, int alignY) { record("textAlign"); }
+
+    @Override
+    public void textFont(PFont which) { record("textFont"); }
+
+    @Override
+    public void textFont(PFont which, float size) { record("textFont"); }
+
+    @Override
+    public void textSize(float size) { record("textSize"); }
+}
@@ -0,0 +1,168 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the areas reported by dirty tracking between draws.
+ * Each character is 10 pixels wide, and every dirty rectangle has 1 pixel of padding around the characters it covers.
+ */
+class SpicyTextDirtyTest {
+
+    private static final int TEXT_SIZE = 20;
+    private static final int RED = 0xFFFF0000;
+    private static final int BLUE = 0xFF0000FF;
+
+    private TestSketch sketch;
+    private SpicyTextTheme theme;
+
+    @BeforeEach
+    void setup() {
+        sketch = new TestSketch();
+        theme = TestSketch.fixedWidthTheme();
+        // So areas only cover the characters themselves
+        theme.dropShadowOffset = 0;
+    }
+
+    @Test
+    void firstDrawIsAllDirty() {
+        SpicyText text = tracked("abc\nde");
+
+        List<DirtyRect> rects = text.dirtyRects();
+
+        assertEquals(1, rects.size());
+        assertEquals(-1, rects.get(0).x, 0);
+        assertEquals(32, rects.get(0).width, 0);
+    }
+
+    @Test
+    void staticTextIsClean() {
+        SpicyText text = tracked("abc\n[BACKGROUND=#FFFF0000]de[END_BACKGROUND]");
+
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertTrue(text.dirtyRects().isEmpty());
+    }
+
+    @Test
+    void movingCoversOldAndNewBounds() {
+        SpicyText text = tracked("abc\nde");
+        DirtyRect before = text.dirtyRects().get(0);
+
+        text.draw(new RecordingGraphics(), 30, 5);
+        List<DirtyRect> rects = text.dirtyRects();
+
+        // Every character moved, so there is one area per line
+        assertEquals(2, rects.size());
+        assertCovered(rects, before);
+        assertCovered(rects, new DirtyRect(before.x + 30, before.y + 5, before.width, before.height));
+    }
+
+    @Test
+    void colourRemapCoversRemappedChars() {
+        SpicyText text = tracked("ab[COLOUR=#FFFF0000]cd[END_COLOUR]ef");
+        DirtyRect before = text.dirtyRects().get(0);
+
+        theme.remapColour(RED, BLUE);
+        text.draw(new RecordingGraphics(), 0, 0);
+        List<DirtyRect> rects = text.dirtyRects();
+
+        assertEquals(1, rects.size());
+        DirtyRect rect = rects.get(0);
+        assertEquals(19, rect.x, 0);
+        assertEquals(22, rect.width, 0);
+        assertEquals(before.y, rect.y, 0);
+        assertEquals(before.height, rect.height, 0);
+
+        theme.clearColourRemap(RED);
+        text.draw(new RecordingGraphics(), 0, 0);
+        assertEquals(1, text.dirtyRects().size());
+    }
+
+    @Test
+    void dropShadowChangeCoversOldAndNewBounds() {
+        SpicyText text = tracked("abc\nde");
+        DirtyRect before = text.dirtyRects().get(0);
+
+        theme.dropShadowOffset += 5;
+        text.draw(new RecordingGraphics(), 0, 0);
+        List<DirtyRect> rects = text.dirtyRects();
+
+        assertFalse(rects.isEmpty());
+        assertCovered(rects, before);
+        // The shadow now reaches further right and down
+        assertCovered(rects, new DirtyRect(before.x, before.y, before.width + 5, before.height + 5));
+
+        text.draw(new RecordingGraphics(), 0, 0);
+        assertTrue(text.dirtyRects().isEmpty());
+    }
+
+    @Test
+    void waveGivesOneAreaPerChangedRunPerLine() {
+        SpicyText text = tracked("[EFFECT=WAVE]ab[END_EFFECT]cd[EFFECT=WAVE]ef[END_EFFECT]\ng[EFFECT=WAVE]hi[END_EFFECT]j");
+
+        sketch.time = 1000;
+        text.draw(new RecordingGraphics(), 0, 0);
+        List<DirtyRect> rects = text.dirtyRects();
+
+        assertEquals(3, rects.size());
+
+        // ab and ef on the first line, hi on the second
+        assertEquals(-1, rects.get(0).x, 0);
+        assertEquals(22, rects.get(0).width, 0);
+        assertEquals(39, rects.get(1).x, 0);
+        assertEquals(22, rects.get(1).width, 0);
+        assertEquals(9, rects.get(2).x, 0);
+        assertEquals(22, rects.get(2).width, 0);
+        assertTrue(rects.get(2).y > rects.get(0).y);
+    }
+
+    @Test
+    void dirtyRectsIsNotChangedByLaterDraws() {
+        SpicyText text = tracked("abc");
+        List<DirtyRect> first = text.dirtyRects();
+
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertEquals(1, first.size());
+        assertTrue(text.dirtyRects().isEmpty());
+    }
+
+    @Test
+    void nothingReportedWhenOff() {
+        SpicyText text = new SpicyText(sketch, "abc", TEXT_SIZE, theme);
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertTrue(text.dirtyRects().isEmpty());
+    }
+
+    /**
+     * Creates a SpicyText with dirty tracking on, and draws it once at the origin.
+     */
+    private SpicyText tracked(String string) {
+        SpicyText text = new SpicyText(sketch, string, TEXT_SIZE, theme);
+        text.setDirtyTracking(true);
+        text.draw(new RecordingGraphics(), 0, 0);
+        return text;
+    }
+
+    /**
+     * Checks the area is inside the bounding box of the given rectangles.
+     */
+    private static void assertCovered(List<DirtyRect> rects, DirtyRect area) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for(DirtyRect rect : rects) {
+            minX = Math.min(minX, rect.x);
+            minY = Math.min(minY, rect.y);
+            maxX = Math.max(maxX, rect.x + rect.width);
+            maxY = Math.max(maxY, rect.y + rect.height);
+        }
+        assertTrue(minX <= area.x && minY <= area.y && maxX >= area.x + area.width && maxY >= area.y + area.height,
+                area + " not covered by " + rects);
+    }
+}
@@ -0,0 +1,150 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks how SpicyTextDocument splits text into pages, carries tags between them and caches processed pages.
+ * With FixedWidthFont at size 20 and the default newLineMargin, lines are 24 pixels apart.
+ */
+class SpicyTextDocumentTest {
+
+    private static final int TEXT_SIZE = 20;
+    private static final int RED = 0xFFFF0000;
+
+    // A non-ASCII effect name, so the memory-mapped file has to decode multi-byte characters inside a tag
+    private static final String RECORD_EFFECT = "\u00C9CLAT";
+
+    private PApplet sketch;
+    private SpicyTextTheme theme;
+    private final List<String> recorded = new ArrayList<>();
+    private File file;
+
+    @BeforeEach
+    void setup() {
+        sketch = new TestSketch();
+        theme = TestSketch.fixedWidthTheme();
+
+        // Records each character the effect is applied to, with the colour it is drawn in
+        SpicyText.customEffect(RECORD_EFFECT, (c, params) -> recorded.add(c.c + "=" + Integer.toHexString(params.colour)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        SpicyText.effects.remove(RECORD_EFFECT);
+        if(file != null) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private File writeFile(String text) throws IOException {
+        file = File.createTempFile("spicytext", ".txt");
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String lines(int count) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < count; i ++) {
+            if(i > 0) {
+                text.append('\n');
+            }
+            text.append("line ").append(i);
+        }
+        return text.toString();
+    }
+
+    @Test
+    void splitsIntoPagesOfWholeLines() throws IOException {
+        SpicyTextDocument document = new SpicyTextDocument(sketch, new StringReader(lines(10)), TEXT_SIZE, -1, theme, 4);
+
+        assertEquals(3, document.pageCount());
+        assertEquals(10 * 24 - 4, document.height(), 0.001f);
+    }
+
+    @Test
+    void openTagsCarryIntoNextPage() throws IOException {
+        String text = "a\n[COLOUR=#FFFF0000][EFFECT=" + RECORD_EFFECT + "]b\nc[END_COLOUR]d\ne[END_EFFECT]\nf";
+        SpicyTextDocument document = new SpicyTextDocument(sketch, new StringReader(text), TEXT_SIZE, -1, theme, 2);
+        assertEquals(3, document.pageCount());
+
+        document.draw(new RecordingGraphics(), 0, 0, 0, document.height());
+
+        String red = Integer.toHexString(RED);
+        String plain = Integer.toHexString(sketch.color(theme.textColour));
+        assertEquals(List.of("b=" + red, "c=" + red, "d=" + plain, "e=" + plain), recorded);
+    }
+
+    @Test
+    void readerAndFileGiveSamePages() throws IOException {
+        String text = "caf\u00E9 [EFFECT=" + RECORD_EFFECT + "]na\u00EFve\n\u65E5\u672C\n[BACKGROUND=#FFFF0000]x\n\u00FC[END_BACKGROUND]\n[END_EFFECT]end\n";
+        SpicyTextDocument fromReader = new SpicyTextDocument(sketch, new StringReader(text), TEXT_SIZE, -1, theme, 2);
+        SpicyTextDocument fromFile = new SpicyTextDocument(sketch, writeFile(text), TEXT_SIZE, -1, theme, 2);
+
+        assertEquals(fromReader.pageCount(), fromFile.pageCount());
+        assertEquals(fromReader.height(), fromFile.height(), 0.001f);
+
+        RecordingGraphics readerGraphics = new RecordingGraphics();
+        fromReader.draw(readerGraphics, 0, 0, 0, fromReader.height());
+        List<String> readerChars = new ArrayList<>(recorded);
+
+        recorded.clear();
+        RecordingGraphics fileGraphics = new RecordingGraphics();
+        fromFile.draw(fileGraphics, 0, 0, 0, fromFile.height());
+
+        assertFalse(readerChars.isEmpty());
+        assertEquals(readerChars, recorded);
+        assertEquals(readerGraphics.calls(), fileGraphics.calls());
+        assertEquals(readerGraphics.count("rect"), 2);
+    }
+
+    @Test
+    void onlyVisiblePagesAreProcessed() throws IOException {
+        // Pages are 2 lines (48 pixels) each, so 100..110 is inside the third page
+        SpicyTextDocument document = new SpicyTextDocument(sketch, new StringReader(lines(20)), TEXT_SIZE, -1, theme, 2);
+
+        document.draw(new RecordingGraphics(), 0, 0, 100, 10);
+        assertEquals(1, document.cachedPageCount());
+
+        document.draw(new RecordingGraphics(), 0, 0, 100, 50);
+        assertEquals(2, document.cachedPageCount());
+    }
+
+    @Test
+    void cacheStaysWithinLimit() throws IOException {
+        SpicyTextDocument document = new SpicyTextDocument(sketch, new StringReader(lines(50)), TEXT_SIZE, -1, theme, 2);
+        document.setMaxCachedPages(3);
+
+        for(float scroll = 0; scroll < document.height(); scroll += 30) {
+            document.draw(new RecordingGraphics(), 0, 0, scroll, 100);
+            assertTrue(document.cachedPageCount() <= 3, "cached " + document.cachedPageCount() + " pages");
+        }
+        assertEquals(3, document.cachedPageCount());
+
+        document.setMaxCachedPages(1);
+        assertEquals(1, document.cachedPageCount());
+    }
+
+    @Test
+    void layoutChangeRemeasuresDroppedPages() throws IOException {
+        SpicyTextDocument document = new SpicyTextDocument(sketch, new StringReader(lines(20)), TEXT_SIZE, -1, theme, 2);
+        document.setMaxCachedPages(1);
+        document.draw(new RecordingGraphics(), 0, 0, 0, document.height());
+
+        theme.newLineMargin = 14;
+
+        assertEquals(20 * 34 - 14, document.height(), 0.001f);
+    }
+}
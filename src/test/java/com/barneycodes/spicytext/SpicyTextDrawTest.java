@@ -0,0 +1,123 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Draw-call budgets for SpicyText.draw.
+ * Each test draws a representative text onto a RecordingGraphics and checks how many of each call were made, so a
+ * change that adds per-character state changes shows up as a failure rather than a quiet frame-time regression.
+ * The budgets are ceilings: lowering a count is fine (tighten the budget when it happens), raising one is not.
+ */
+class SpicyTextDrawTest {
+
+    private static final int TEXT_SIZE = 20;
+
+    private PApplet sketch;
+    private SpicyTextTheme theme;
+    private RecordingGraphics g;
+
+    @BeforeEach
+    void setup() {
+        // The sketch is never run and has no graphics of its own; the theme font means it never needs one
+        sketch = new PApplet();
+        theme = TestSketch.fixedWidthTheme();
+        g = new RecordingGraphics();
+    }
+
+    private void assertBudget(String call, int budget) {
+        int count = g.count(call);
+        assertTrue(count <= budget, String.format("%s called %d times, budget is %d (all calls: %s)", call, count, budget, g));
+    }
+
+    /**
+     * Checks the calls made for the given number of characters, of which some have a background.
+     * Every character currently costs one push/pop, two translates and one rotate (plus the same again for its
+     * background), a fill and text for the glyph, and another fill and text for its drop shadow.
+     */
+    private void assertCharBudget(int chars, int backgrounds, boolean shadow) {
+        int perGlyphText = shadow ? 2 : 1;
+
+        assertEquals(g.count("push"), g.count("pop"), "push and pop should be balanced");
+
+        // One push and translate for the whole text, then per-character transforms
+        assertBudget("push", 1 + chars + backgrounds);
+        assertBudget("translate", 1 + 2 * (chars + backgrounds));
+        assertBudget("rotate", chars + backgrounds);
+
+        assertBudget("text", perGlyphText * chars);
+        assertBudget("fill", perGlyphText * chars + backgrounds);
+        assertBudget("rect", backgrounds);
+        assertBudget("noStroke", backgrounds);
+
+        // Text state is set once per draw, not per character
+        assertBudget("textAlign", 1);
+        assertBudget("textFont", 1);
+        assertBudget("textSize", 1);
+
+        assertEquals(0, g.count("pushMatrix") + g.count("pushStyle"), "draw should only use push/pop");
+    }
+
+    @Test
+    void plainText() {
+        SpicyText text = new SpicyText(sketch, "Hello world", TEXT_SIZE, theme);
+        text.draw(g, 0, 0);
+
+        assertEquals(11, g.count("text") / 2);
+        assertCharBudget(11, 0, true);
+    }
+
+    @Test
+    void plainTextWithoutShadow() {
+        theme.dropShadowOffset = 0;
+        SpicyText text = new SpicyText(sketch, "Hello world", TEXT_SIZE, theme);
+        text.draw(g, 0, 0);
+
+        assertEquals(11, g.count("text"));
+        assertCharBudget(11, 0, false);
+    }
+
+    @Test
+    void highlightedText() {
+        SpicyText text = new SpicyText(sketch, "plain [BACKGROUND=#FFFF0000]highlighted[END_BACKGROUND]", TEXT_SIZE, theme);
+        text.draw(g, 0, 0);
+
+        assertEquals(11, g.count("rect"));
+        assertCharBudget(17, 11, true);
+    }
+
+    @Test
+    void multiEffectText() {
+        SpicyText text = new SpicyText(sketch, "[EFFECT=WAVE]wave [EFFECT=JIGGLE]both[END_EFFECT][END_EFFECT] none", TEXT_SIZE, theme);
+        text.draw(g, 0, 0, PApplet.CENTER, PApplet.CENTER);
+
+        assertCharBudget(14, 0, true);
+    }
+
+    @Test
+    void wrappedText() {
+        // Each character is 10 pixels wide, so this wraps onto several lines
+        SpicyText text = new SpicyText(sketch, "the [COLOUR=#FFFF0000]quick[END_COLOUR] brown\nfox jumps over", TEXT_SIZE, 60, theme);
+        assertTrue(text.height() > TEXT_SIZE * 2, "text should have wrapped");
+
+        text.draw(g, 0, 0, PApplet.RIGHT, PApplet.BOTTOM);
+
+        assertCharBudget(29, 0, true);
+    }
+
+    @Test
+    void repeatedDrawsCostTheSame() {
+        SpicyText text = new SpicyText(sketch, "[BACKGROUND=255][EFFECT=BOUNCE]same[END_EFFECT][END_BACKGROUND] every frame", TEXT_SIZE, theme);
+
+        text.draw(g, 0, 0);
+        int first = g.total();
+
+        g.reset();
+        text.draw(g, 0, 0);
+
+        assertEquals(first, g.total());
+    }
+}
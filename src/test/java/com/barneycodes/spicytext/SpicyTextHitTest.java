@@ -0,0 +1,151 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+import processing.core.PVector;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static processing.core.PConstants.*;
+
+/**
+ * Checks charAt/positionOf against exact positions.
+ * With FixedWidthFont at size 20 every character is 10 pixels wide and 20 high, and lines are 24 pixels apart.
+ */
+class SpicyTextHitTest {
+
+    private static final int TEXT_SIZE = 20;
+
+    // Lines: "ab" (20 wide), "" and "cde" (30 wide), so the text is 68 high
+    private static final String BLANK_LINE_TEXT = "ab\n\ncde";
+
+    private PApplet sketch;
+    private SpicyTextTheme theme;
+
+    @BeforeEach
+    void setup() {
+        sketch = new PApplet();
+        theme = TestSketch.fixedWidthTheme();
+    }
+
+    @Test
+    void leftTopAlignment() {
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+
+        assertEquals(0, text.charAt(5, 5, LEFT, TOP));
+        assertEquals(1, text.charAt(15, 19, LEFT, TOP));
+        assertEquals(-1, text.charAt(25, 5, LEFT, TOP));
+        assertEquals(-1, text.charAt(-1, 5, LEFT, TOP));
+        assertEquals(3, text.charAt(15, 50, LEFT, TOP));
+        assertEquals(4, text.charAt(29, 67, LEFT, TOP));
+        assertEquals(-1, text.charAt(5, 69, LEFT, TOP));
+    }
+
+    @Test
+    void horizontalAlignment() {
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+
+        // Each line is aligned by its own length
+        assertEquals(0, text.charAt(-5, 5, CENTER, TOP));
+        assertEquals(2, text.charAt(-14, 50, CENTER, TOP));
+        assertEquals(4, text.charAt(14, 50, CENTER, TOP));
+        assertEquals(-1, text.charAt(16, 50, CENTER, TOP));
+
+        assertEquals(1, text.charAt(-5, 5, RIGHT, TOP));
+        assertEquals(2, text.charAt(-25, 50, RIGHT, TOP));
+        assertEquals(-1, text.charAt(5, 50, RIGHT, TOP));
+    }
+
+    @Test
+    void verticalAlignment() {
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+
+        assertEquals(0, text.charAt(5, 5 - 34, LEFT, CENTER));
+        assertEquals(2, text.charAt(5, 50 - 34, LEFT, CENTER));
+        assertEquals(0, text.charAt(5, 5 - 68, LEFT, BOTTOM));
+        assertEquals(2, text.charAt(5, 50 - 68, LEFT, BOTTOM));
+        assertEquals(-1, text.charAt(5, 1, LEFT, BOTTOM));
+    }
+
+    @Test
+    void gapsAndBlankLinesHaveNoChars() {
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+
+        // Gap between the first and (blank) second line
+        assertEquals(-1, text.charAt(5, 22, LEFT, TOP));
+        // The blank line itself
+        assertEquals(-1, text.charAt(5, 30, LEFT, TOP));
+        // Gap after the blank line
+        assertEquals(-1, text.charAt(5, 46, LEFT, TOP));
+    }
+
+    @Test
+    void wrappedText() {
+        // Wraps into "aaa ", "bbb " and "ccc"
+        SpicyText text = new SpicyText(sketch, "aaa bbb ccc", TEXT_SIZE, 50, theme);
+
+        assertEquals(3, text.charAt(35, 5, LEFT, TOP));
+        assertEquals(4, text.charAt(5, 30, LEFT, TOP));
+        assertEquals(9, text.charAt(15, 50, LEFT, TOP));
+        assertEquals(-1, text.charAt(35, 50, LEFT, TOP));
+
+        PVector position = text.positionOf(9);
+        assertEquals(10, position.x, 0.001f);
+        assertEquals(48, position.y, 0.001f);
+    }
+
+    @Test
+    void positionOfMatchesCharAt() {
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+
+        int[] alignH = {LEFT, CENTER, RIGHT};
+        int[] alignV = {TOP, CENTER, BOTTOM};
+        for(int h : alignH) {
+            for(int v : alignV) {
+                for(int i = 0; i < text.charCount(); i ++) {
+                    PVector position = text.positionOf(i, h, v);
+                    assertEquals(i, text.charAt(position.x + 5, position.y + 10, h, v));
+                }
+            }
+        }
+    }
+
+    @Test
+    void positionOfBlankLineAlignment() {
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+
+        PVector position = text.positionOf(2, RIGHT, TOP);
+        assertEquals(-30, position.x, 0.001f);
+        assertEquals(48, position.y, 0.001f);
+    }
+
+    @Test
+    void caretAfterTrailingNewLine() {
+        SpicyText text = new SpicyText(sketch, "ab\n", TEXT_SIZE, theme);
+
+        PVector caret = text.positionOf(text.charCount());
+        assertEquals(0, caret.x, 0.001f);
+        assertEquals(24, caret.y, 0.001f);
+
+        SpicyText noNewLine = new SpicyText(sketch, "ab", TEXT_SIZE, theme);
+        caret = noNewLine.positionOf(noNewLine.charCount());
+        assertEquals(20, caret.x, 0.001f);
+        assertEquals(0, caret.y, 0.001f);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> noNewLine.positionOf(3));
+    }
+
+    @Test
+    void drawAlignsLinesAfterBlankLine() {
+        theme.dropShadowOffset = 0;
+        SpicyText text = new SpicyText(sketch, BLANK_LINE_TEXT, TEXT_SIZE, theme);
+        RecordingGraphics g = new RecordingGraphics();
+
+        text.draw(g, 0, 0, RIGHT, TOP);
+
+        // The first translate positions the whole text, then each char translates to its centre and back
+        float[] cTranslate = g.translations().get(1 + 2 * 2);
+        assertEquals(-30 + 5, cTranslate[0], 0.001f);
+        assertEquals(48 + 10, cTranslate[1], 0.001f);
+    }
+}
@@ -0,0 +1,272 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PVector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a layout written with writeLayout loads back identically, and that readLayout falls back to a full
+ * relayout (or fails cleanly) when the stored layout can't be used.
+ */
+class SpicyTextLayoutTest {
+
+    private static final int TEXT_SIZE = 20;
+
+    private static final int MAX_WIDTH = 100;
+
+    // Wraps onto several lines, with a blank line, a background run and nested effects
+    private static final String TEXT = "hello there[BACKGROUND=255] spicy[END_BACKGROUND]\n\n[EFFECT=WAVE]wavy [EFFECT=JIGGLE]jiggly[END_EFFECT] text[END_EFFECT] end";
+
+    /**
+     * Same name and vertical metrics as FixedWidthFont, but wider glyphs.
+     */
+    private static class WideFont extends FixedWidthFont {
+        @Override
+        public float width(char c) {
+            return 0.6f;
+        }
+    }
+
+    private PApplet sketch;
+    private SpicyTextTheme theme;
+
+    @BeforeEach
+    void setup() {
+        // The clock doesn't move, so animated effects draw the same way every time
+        sketch = new TestSketch();
+        theme = TestSketch.fixedWidthTheme();
+        SpicyText.setMetricsEnabled(true);
+        SpicyText.resetGlobalMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SpicyText.setMetricsEnabled(false);
+        SpicyText.resetGlobalMetrics();
+    }
+
+    @Test
+    void roundTripMatchesOriginal() throws IOException {
+        SpicyText original = new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme);
+        SpicyText loaded = SpicyText.readLayout(sketch, new ByteArrayInputStream(write(original)), TEXT_SIZE, theme);
+
+        assertEquals(0, loaded.metrics().layouts);
+        assertEquals(original.charCount(), loaded.charCount());
+        assertEquals(original.width(), loaded.width());
+        assertEquals(original.height(), loaded.height());
+
+        for(int i = 0; i < original.charCount(); i ++) {
+            SpicyTextChar expected = original.getChar(i);
+            SpicyTextChar actual = loaded.getChar(i);
+            assertEquals(expected.c, actual.c, "char " + i);
+            assertEquals(expected.colour, actual.colour, "colour " + i);
+            assertEquals(expected.background, actual.background, "background " + i);
+            assertEquals(expected.width, actual.width, "width " + i);
+            assertEquals(expected.effects(), actual.effects(), "effects " + i);
+
+            // positionOf goes through the line table, so this checks the line lengths too
+            PVector expectedPosition = original.positionOf(i, PConstants.CENTER, PConstants.BOTTOM);
+            PVector actualPosition = loaded.positionOf(i, PConstants.CENTER, PConstants.BOTTOM);
+            assertEquals(expectedPosition.x, actualPosition.x, 0, "x " + i);
+            assertEquals(expectedPosition.y, actualPosition.y, 0, "y " + i);
+        }
+
+        RecordingGraphics expectedGraphics = new RecordingGraphics();
+        RecordingGraphics actualGraphics = new RecordingGraphics();
+        original.draw(expectedGraphics, 10, 20, PConstants.RIGHT, PConstants.CENTER);
+        loaded.draw(actualGraphics, 10, 20, PConstants.RIGHT, PConstants.CENTER);
+
+        assertEquals(expectedGraphics.calls(), actualGraphics.calls());
+        assertEquals(translations(expectedGraphics), translations(actualGraphics));
+    }
+
+    @Test
+    void emptyTextRoundTrips() throws IOException {
+        SpicyText original = new SpicyText(sketch, "", TEXT_SIZE, theme);
+        SpicyText loaded = SpicyText.readLayout(sketch, new ByteArrayInputStream(write(original)), TEXT_SIZE, theme);
+
+        assertEquals(0, loaded.metrics().layouts);
+        assertEquals(0, loaded.charCount());
+        assertEquals(original.height(), loaded.height());
+    }
+
+    @Test
+    void differentGlyphWidthsRelayout() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        theme.font = new WideFont();
+        SpicyText loaded = SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme);
+
+        assertRelaidOut(loaded, TEXT_SIZE);
+    }
+
+    @Test
+    void differentTextSizeRelayouts() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        SpicyText loaded = SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE * 2, theme);
+
+        assertRelaidOut(loaded, TEXT_SIZE * 2);
+    }
+
+    @Test
+    void differentNewLineMarginRelayouts() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        theme.newLineMargin += 6;
+        SpicyText loaded = SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme);
+
+        assertRelaidOut(loaded, TEXT_SIZE);
+    }
+
+    @Test
+    void notALayoutThrows() {
+        byte[] garbage = "definitely not a layout".getBytes();
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(garbage), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void truncatedLayoutThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+        byte[] truncated = Arrays.copyOf(layout, layout.length - 3);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(truncated), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void negativeCountThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        // The line count follows the header, the raw text and the five layout sizes
+        int lineCountOffset = 28 + ByteBuffer.wrap(layout).getInt(24) + 5 * Integer.BYTES;
+        ByteBuffer.wrap(layout).putInt(lineCountOffset, -1);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void characterOffTheLastLineThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        int count = charCountOffset(layout);
+        int firstY = count + Integer.BYTES + ByteBuffer.wrap(layout).getInt(count) * (Character.BYTES + Float.BYTES);
+        ByteBuffer.wrap(layout).putFloat(firstY, 10000f);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void charactersOutOfOrderThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        // Move the second character to the left of the first, on the same line
+        int count = charCountOffset(layout);
+        int secondX = count + Integer.BYTES + ByteBuffer.wrap(layout).getInt(count) * Character.BYTES + Float.BYTES;
+        ByteBuffer.wrap(layout).putFloat(secondX, -50f);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void wrongLineMetricsThrow() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+        int metrics = 28 + ByteBuffer.wrap(layout).getInt(24);
+
+        // Line spacing, then text height
+        byte[] noSpacing = layout.clone();
+        ByteBuffer.wrap(noSpacing).putInt(metrics + 2 * Integer.BYTES, 0);
+        byte[] tallText = layout.clone();
+        ByteBuffer.wrap(tallText).putInt(metrics + Integer.BYTES, TEXT_SIZE * 3);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(noSpacing), TEXT_SIZE, theme));
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(tallText), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void hugeCountThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        // The raw text length
+        ByteBuffer.wrap(layout).putInt(24, Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void unknownEffectListThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, TEXT, TEXT_SIZE, MAX_WIDTH, theme));
+
+        // The last run has no end written, so its effect list id is the last thing in the layout
+        ByteBuffer.wrap(layout).putInt(layout.length - Integer.BYTES, 99);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme));
+    }
+
+    @Test
+    void runStartOutOfRangeThrows() throws IOException {
+        byte[] layout = write(new SpicyText(sketch, "ab[BACKGROUND=255]cd", TEXT_SIZE, theme));
+
+        // Two runs: start, colour, flag, background, effect id, then the second run's start
+        int secondRunStart = layout.length - (Integer.BYTES * 3 + 1) - Integer.BYTES;
+        ByteBuffer.wrap(layout).putInt(secondRunStart, 50);
+
+        assertThrows(IOException.class, () -> SpicyText.readLayout(sketch, new ByteArrayInputStream(layout), TEXT_SIZE, theme));
+    }
+
+    private void assertRelaidOut(SpicyText loaded, int textSize) {
+        assertEquals(1, loaded.metrics().layouts);
+
+        SpicyText expected = new SpicyText(sketch, TEXT, textSize, MAX_WIDTH, theme);
+        assertEquals(expected.charCount(), loaded.charCount());
+        assertEquals(expected.width(), loaded.width());
+        assertEquals(expected.height(), loaded.height());
+        for(int i = 0; i < expected.charCount(); i ++) {
+            assertEquals(expected.positionOf(i).x, loaded.positionOf(i).x, 0, "x " + i);
+            assertEquals(expected.positionOf(i).y, loaded.positionOf(i).y, 0, "y " + i);
+        }
+    }
+
+    /**
+     * Finds the character count in a layout, which is followed by the characters, x positions, y positions and widths.
+     */
+    private static int charCountOffset(byte[] layout) {
+        ByteBuffer data = ByteBuffer.wrap(layout);
+        // Header, raw text and the five layout sizes
+        data.position(28 + data.getInt(24) + 5 * Integer.BYTES);
+        // Line lengths
+        int lines = data.getInt();
+        data.position(data.position() + lines * Float.BYTES);
+        // Effect lists
+        int effectLists = data.getInt();
+        for(int i = 0; i < effectLists; i ++) {
+            int size = data.getInt();
+            for(int j = 0; j < size; j ++) {
+                int length = data.getInt();
+                data.position(data.position() + length);
+            }
+        }
+        return data.position();
+    }
+
+    private static byte[] write(SpicyText text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        text.writeLayout(out);
+        return out.toByteArray();
+    }
+
+    private static List<String> translations(RecordingGraphics g) {
+        return g.translations().stream().map(Arrays::toString).toList();
+    }
+}
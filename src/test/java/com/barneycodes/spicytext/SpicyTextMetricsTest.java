@@ -0,0 +1,117 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the counters collected by SpicyText when metrics are enabled.
+ * Metrics are global state, so every test starts from zero and leaves them disabled.
+ */
+class SpicyTextMetricsTest {
+
+    private static final int TEXT_SIZE = 20;
+
+    // 6 chars, 2 with a background, 3 with one effect and 1 with two
+    private static final String TEXT = "ab[BACKGROUND=255]cd[END_BACKGROUND][EFFECT=WAVE]ef[EFFECT=JIGGLE]g[END_EFFECT][END_EFFECT]";
+
+    private PApplet sketch;
+    private SpicyTextTheme theme;
+
+    @BeforeEach
+    void setup() {
+        sketch = new PApplet();
+        theme = TestSketch.fixedWidthTheme();
+        SpicyText.setMetricsEnabled(false);
+        SpicyText.resetGlobalMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SpicyText.setMetricsEnabled(false);
+        SpicyText.resetGlobalMetrics();
+    }
+
+    @Test
+    void nothingCollectedWhileDisabled() {
+        SpicyText text = new SpicyText(sketch, TEXT, TEXT_SIZE, theme);
+        text.setText(TEXT);
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        SpicyTextMetrics metrics = text.metrics();
+        assertEquals(0, metrics.layouts);
+        assertEquals(0, metrics.cacheHits);
+        assertEquals(0, metrics.draws);
+        assertEquals(0, metrics.glyphsDrawn);
+        assertEquals(0, SpicyText.globalMetrics().draws);
+    }
+
+    @Test
+    void countsMatchKnownText() {
+        SpicyText.setMetricsEnabled(true);
+        SpicyText text = new SpicyText(sketch, TEXT, TEXT_SIZE, theme);
+        text.setText(TEXT);
+        text.draw(new RecordingGraphics(), 0, 0);
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        SpicyTextMetrics metrics = text.metrics();
+        assertEquals(1, metrics.layouts);
+        assertEquals(1, metrics.cacheHits);
+        assertEquals(2, metrics.draws);
+        assertEquals(2 * 7, metrics.glyphsDrawn);
+        assertEquals(2 * 2, metrics.backgroundsDrawn);
+        assertEquals(2 * 4, metrics.effectEvaluations);
+    }
+
+    @Test
+    void unknownEffectsAreNotCounted() {
+        SpicyText.setMetricsEnabled(true);
+        SpicyText text = new SpicyText(sketch, "[EFFECT=WAVY]ab[END_EFFECT][EFFECT=WAVE]c[END_EFFECT]", TEXT_SIZE, theme);
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertEquals(1, text.metrics().effectEvaluations);
+    }
+
+    @Test
+    void forcedRelayoutIsNotACacheHit() {
+        SpicyText.setMetricsEnabled(true);
+        SpicyText text = new SpicyText(sketch, "", TEXT_SIZE, theme);
+        text.setText("", 100);
+        text.setText(TEXT, 100);
+        text.setText(TEXT, 100);
+
+        assertEquals(4, text.metrics().layouts);
+        assertEquals(0, text.metrics().cacheHits);
+    }
+
+    @Test
+    void globalMetricsSumInstances() {
+        SpicyText.setMetricsEnabled(true);
+        SpicyText first = new SpicyText(sketch, TEXT, TEXT_SIZE, theme);
+        SpicyText second = new SpicyText(sketch, "hello", TEXT_SIZE, theme);
+        first.draw(new RecordingGraphics(), 0, 0);
+        second.draw(new RecordingGraphics(), 0, 0);
+
+        SpicyTextMetrics global = SpicyText.globalMetrics();
+        assertEquals(2, global.layouts);
+        assertEquals(2, global.draws);
+        assertEquals(first.metrics().glyphsDrawn + second.metrics().glyphsDrawn, global.glyphsDrawn);
+    }
+
+    @Test
+    void resetMetricsLeavesGlobalAlone() {
+        SpicyText.setMetricsEnabled(true);
+        SpicyText text = new SpicyText(sketch, TEXT, TEXT_SIZE, theme);
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        text.resetMetrics();
+
+        assertEquals(0, text.metrics().layouts);
+        assertEquals(0, text.metrics().draws);
+        assertEquals(1, SpicyText.globalMetrics().layouts);
+        assertEquals(1, SpicyText.globalMetrics().draws);
+    }
+}
@@ -0,0 +1,109 @@
+package com.barneycodes.spicytext;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processing.core.PApplet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that paint-only theme changes are picked up without any layout work, and layout changes with exactly one.
+ * Layouts are counted with the rendering metrics.
+ */
+class SpicyTextThemeTest {
+
+    private static final int TEXT_SIZE = 20;
+    private static final int RED = 0xFFFF0000;
+    private static final int BLUE = 0xFF0000FF;
+    private static final String RECORD_EFFECT = "RECORD";
+
+    private PApplet sketch;
+    private SpicyTextTheme theme;
+    private SpicyText text;
+
+    @BeforeEach
+    void setup() {
+        sketch = new TestSketch();
+        theme = TestSketch.fixedWidthTheme();
+
+        SpicyText.setMetricsEnabled(true);
+        text = new SpicyText(sketch, "plain [COLOUR=#FFFF0000]red[END_COLOUR]\n[BACKGROUND=#FFFF0000]line two", TEXT_SIZE, theme);
+        text.draw(new RecordingGraphics(), 0, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SpicyText.setMetricsEnabled(false);
+        SpicyText.resetGlobalMetrics();
+        SpicyText.effects.remove(RECORD_EFFECT);
+    }
+
+    /**
+     * Draws with an effect on every char that records the colours it starts with.
+     */
+    private List<int[]> drawnColours() {
+        List<int[]> colours = new ArrayList<>();
+        SpicyText.customEffect(RECORD_EFFECT, (c, params) -> colours.add(new int[] {params.colour, params.background}));
+
+        SpicyText recorded = new SpicyText(sketch, "[EFFECT=" + RECORD_EFFECT + "]a[COLOUR=#FFFF0000]b[BACKGROUND=#FFFF0000]c", TEXT_SIZE, theme);
+        recorded.draw(new RecordingGraphics(), 0, 0);
+        return colours;
+    }
+
+    @Test
+    void paintChangesDoNoLayout() {
+        theme.textColour = 0xFF00FF00;
+        theme.shadowOpacity = 0.2f;
+        theme.dropShadowOffset = 5;
+        theme.textBackgroundMargin = 1;
+        theme.cornerRadius = 0;
+        theme.remapColour(RED, BLUE);
+
+        assertFalse(text.refreshLayout());
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertEquals(1, text.metrics().layouts);
+    }
+
+    @Test
+    void paintChangesShowOnNextDraw() {
+        theme.textColour = 0xFF00FF00;
+        theme.remapColour(RED, BLUE);
+
+        List<int[]> colours = drawnColours();
+        assertArrayEquals(new int[] {0xFF00FF00, -1}, colours.get(0));
+        assertArrayEquals(new int[] {BLUE, -1}, colours.get(1));
+        assertArrayEquals(new int[] {BLUE, BLUE}, colours.get(2));
+
+        theme.clearColourRemaps();
+        colours = drawnColours();
+        assertArrayEquals(new int[] {RED, RED}, colours.get(2));
+    }
+
+    @Test
+    void fontChangeRelayoutsOnceOnDraw() {
+        theme.font = new FixedWidthFont();
+
+        text.draw(new RecordingGraphics(), 0, 0);
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertEquals(2, text.metrics().layouts);
+    }
+
+    @Test
+    void newLineMarginChangeRelayoutsOnceOnRefresh() {
+        int height = text.height();
+        theme.newLineMargin += 10;
+
+        assertTrue(text.refreshLayout());
+        assertFalse(text.refreshLayout());
+        text.draw(new RecordingGraphics(), 0, 0);
+
+        assertEquals(2, text.metrics().layouts);
+        assertEquals(height + 10, text.height());
+    }
+}
@@ -0,0 +1,34 @@
+package com.barneycodes.spicytext;
+
+import processing.core.PApplet;
+
+/**
+ * A sketch that is never run, for tests that need colours to resolve properly or animated effects to be predictable.
+ * Its clock only moves when the test sets the time.
+ */
+class TestSketch extends PApplet {
+
+    /**
+     * The value returned by millis()
+     */
+    int time;
+
+    TestSketch() {
+        // Without a g, PApplet.color treats ARGB colours as out of range greys
+        g = new RecordingGraphics();
+    }
+
+    @Override
+    public int millis() {
+        return time;
+    }
+
+    /**
+     * @return a default theme using FixedWidthFont, so text can be measured without loading a real font
+     */
+    static SpicyTextTheme fixedWidthTheme() {
+        SpicyTextTheme theme = new SpicyTextTheme();
+        theme.font = new FixedWidthFont();
+        return theme;
+    }
+}